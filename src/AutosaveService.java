@@ -0,0 +1,420 @@
+// 文件名： AutosaveService.java
+// 功能： 后台自动保存：定期把未保存的修改写入恢复文件，程序异常退出后下次启动时可以恢复
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * 自动保存服务。文档有未保存的修改时，每隔几秒在 EDT 上创建一次快照（见 SlideSnapshot，只编码修改过的页面），
+ * 由后台线程写成恢复文件：先写临时文件再原子地改名，任何时刻恢复文件都是完整的。
+ * 文档保存后或不再有未保存的修改时删除恢复文件，正常退出时同样删除。
+ * <p>
+ * 恢复文件放在用户目录下的 .powerdot/recovery 中，每个运行中的程序持有一个同名的 .lock 文件锁；
+ * 锁已释放（程序已退出）而恢复文件仍在，说明程序没有正常退出，下次启动时由 findRecoveries 找出。
+ * 除 findRecoveries 外的方法只在 EDT 调用。
+ */
+public class AutosaveService {
+    private static final int INTERVAL_MS = 5000;
+    private static final String JOURNAL_SUFFIX = ".slide";
+
+    private final Path directory;
+    private final BooleanSupplier modified;
+    private final String id;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "autosave");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private Timer timer;
+    private FileChannel lockChannel;
+    private FileLock lock;
+
+    // 以下只在 EDT 访问
+    private Slide slide;
+    private File file;
+    private SlideSnapshot.Recorder recorder;
+    private SlideSnapshot lastWritten;
+    private int document; // 每次更换文档后递增，丢弃属于旧文档的写出结果
+    private boolean writing;
+    private boolean journalPresent;
+
+    // 以下只在写出线程访问
+    private final Map<SlideFile.Chunk, SlideSnapshot.PageData> unloaded = new IdentityHashMap<>();
+    private LazyPageList unloadedList;
+    private int unloadedEpoch;
+    private final Map<LazyImage, byte[]> encodedImages = new WeakHashMap<>();
+
+    /**
+     * modified 报告当前文档是否有未保存的修改，只有此时才写恢复文件。
+     */
+    public AutosaveService(Path directory, BooleanSupplier modified) {
+        this.directory = directory;
+        this.modified = modified;
+        this.id = System.currentTimeMillis() + "-" + ProcessHandle.current().pid();
+    }
+
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), ".powerdot", "recovery");
+    }
+
+    /**
+     * 取得本程序的锁并开始定期保存。恢复目录不可用时打印异常，自动保存不启用。
+     */
+    public void start() {
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(lockFile(id), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = lockChannel.lock();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return;
+        }
+        timer = new Timer(INTERVAL_MS, e -> autosave());
+        timer.start();
+    }
+
+    /**
+     * 更换当前文档（新建、打开等）。旧文档的恢复文件在其修改被放弃或保存后由下一次检查删除。
+     */
+    public void setDocument(Slide slide, File file) {
+        this.slide = slide;
+        this.file = file;
+        recorder = new SlideSnapshot.Recorder();
+        lastWritten = null;
+        document++;
+        writer.execute(() -> {
+            unloaded.clear(); // 不再持有旧文档
+            unloadedList = null;
+        });
+    }
+
+    /**
+     * 当前文档另存为其他文件后调用，恢复时按新文件名提示。
+     */
+    public void setFile(File file) {
+        this.file = file;
+    }
+
+    // 定时器回调：文档有新的修改时创建快照并交给写出线程
+    private void autosave() {
+        if (slide == null || writing) {
+            return;
+        }
+        if (!modified.getAsBoolean()) {
+            lastWritten = null;
+            if (journalPresent) {
+                journalPresent = false;
+                writer.execute(this::deleteJournal);
+            }
+            return;
+        }
+        SlideSnapshot snapshot;
+        try {
+            snapshot = recorder.take(slide);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return;
+        }
+        if (snapshot.sameContent(lastWritten)) {
+            return;
+        }
+        writing = true;
+        journalPresent = true;
+        int writtenDocument = document;
+        File original = file;
+        SlideSnapshot.Recorder owner = recorder;
+        writer.execute(() -> {
+            boolean ok = write(snapshot, owner, original);
+            SwingUtilities.invokeLater(() -> {
+                writing = false;
+                if (ok && writtenDocument == document) {
+                    lastWritten = snapshot;
+                }
+            });
+        });
+    }
+
+    // 写出线程：读取快照中尚未读取的页面，写恢复文件，再写记录原文件名的说明文件
+    private boolean write(SlideSnapshot snapshot, SlideSnapshot.Recorder owner, File original) {
+        try {
+            if (snapshot.lazy != unloadedList || snapshot.epoch != unloadedEpoch) {
+                unloaded.clear(); // 文件已切换，旧块的编码结果不再对应
+                unloadedList = snapshot.lazy;
+                unloadedEpoch = snapshot.epoch;
+            }
+            List<SlideSnapshot.PageData> pages = new ArrayList<>(snapshot.pages.size());
+            for (Object entry : snapshot.pages) {
+                if (entry instanceof SlideFile.Chunk chunk) {
+                    SlideSnapshot.PageData data = unloaded.get(chunk);
+                    if (data == null) {
+                        data = owner.encode(snapshot.lazy.readDetached(chunk, snapshot.epoch));
+                        unloaded.put(chunk, data);
+                    }
+                    pages.add(data);
+                } else {
+                    pages.add((SlideSnapshot.PageData) entry);
+                }
+            }
+            SlideFile.writeSnapshot(snapshot, pages, journalFile(id), this::encode);
+            Properties info = new Properties();
+            if (original != null) {
+                info.setProperty("file", original.getAbsolutePath());
+            }
+            info.setProperty("time", Long.toString(System.currentTimeMillis()));
+            Path temp = infoFile(id).resolveSibling(id + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                info.store(out, "PowerDot recovery");
+            }
+            Files.move(temp, infoFile(id), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            // 多半是保存或整理切换了文件，下一次重新创建快照即可
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // 尚未保存到文件的图片编码一次后缓存，文件中的图片直接复制原来的块
+    private byte[] encode(LazyImage image) throws IOException {
+        byte[] data = encodedImages.get(image);
+        if (data == null) {
+            data = image.encoded();
+            if (image.inMemory()) {
+                encodedImages.put(image, data);
+            }
+        }
+        return data;
+    }
+
+    private void deleteJournal() {
+        try {
+            Files.deleteIfExists(infoFile(id));
+            Files.deleteIfExists(journalFile(id));
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * 程序正常退出前调用：等待正在进行的写出，删除恢复文件并释放锁。
+     */
+    public void shutdown() {
+        if (timer != null) {
+            timer.stop();
+        }
+        writer.execute(this::deleteJournal);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        releaseLock();
+    }
+
+    private void releaseLock() {
+        try {
+            if (lock != null) {
+                lock.release();
+                lockChannel.close();
+                lock = null;
+                Files.deleteIfExists(lockFile(id));
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * 接管 recovery 并读取其内容作为当前文档，返回恢复的幻灯片。恢复文件改为本程序的恢复文件，
+     * 在恢复的内容被保存或放弃之前一直保留。
+     */
+    public Slide recover(Recovery recovery) throws IOException, ClassNotFoundException {
+        Path journal = journalFile(id);
+        Files.move(recovery.journal, journal, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(recovery.info, infoFile(id), StandardCopyOption.REPLACE_EXISTING);
+        recovery.release();
+        Slide recovered = SlideFile.read(journal.toFile());
+        setDocument(recovered, recovery.getOriginalFile());
+        lastWritten = recorder.take(recovered); // 恢复文件已是这些内容
+        journalPresent = true;
+        return recovered;
+    }
+
+    /**
+     * 找出上次没有正常退出的程序留下的恢复文件，按时间从新到旧排列。返回的恢复项持有对方的锁，
+     * 防止同时启动的另一个程序也去恢复；处理完后调用 Recovery.discard，或交给 recover。
+     */
+    public static List<Recovery> findRecoveries(Path directory) {
+        List<Recovery> found = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return found;
+        }
+        try (DirectoryStream<Path> journals = Files.newDirectoryStream(directory, "*" + JOURNAL_SUFFIX)) {
+            for (Path journal : journals) {
+                String name = journal.getFileName().toString();
+                String owner = name.substring(0, name.length() - JOURNAL_SUFFIX.length());
+                Recovery recovery = Recovery.claim(directory, owner);
+                if (recovery != null) {
+                    found.add(recovery);
+                }
+            }
+            // 没有留下恢复文件的程序的锁文件
+            try (DirectoryStream<Path> locks = Files.newDirectoryStream(directory, "*.lock")) {
+                for (Path lockPath : locks) {
+                    String name = lockPath.getFileName().toString();
+                    String owner = name.substring(0, name.length() - ".lock".length());
+                    if (!Files.exists(directory.resolve(owner + JOURNAL_SUFFIX))) {
+                        Recovery.removeStaleLock(lockPath);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        found.sort(Comparator.comparingLong(Recovery::getSavedTime).reversed());
+        return found;
+    }
+
+    private Path journalFile(String owner) {
+        return directory.resolve(owner + JOURNAL_SUFFIX);
+    }
+
+    private Path infoFile(String owner) {
+        return directory.resolve(owner + ".properties");
+    }
+
+    private Path lockFile(String owner) {
+        return directory.resolve(owner + ".lock");
+    }
+
+    /**
+     * 一个可以恢复的恢复文件。
+     */
+    public static final class Recovery {
+        private final Path journal;
+        private final Path info;
+        private final Path lockPath;
+        private final FileChannel lockChannel;
+        private final File originalFile;
+        private final long savedTime;
+
+        private Recovery(Path journal, Path info, Path lockPath, FileChannel lockChannel, File originalFile,
+                long savedTime) {
+            this.journal = journal;
+            this.info = info;
+            this.lockPath = lockPath;
+            this.lockChannel = lockChannel;
+            this.originalFile = originalFile;
+            this.savedTime = savedTime;
+        }
+
+        // 对方的锁已释放时取得它的锁，否则返回 null（对方仍在运行）
+        private static Recovery claim(Path directory, String owner) throws IOException {
+            Path lockPath = directory.resolve(owner + ".lock");
+            Path info = directory.resolve(owner + ".properties");
+            FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException ex) {
+                lock = null; // 本程序自己的锁
+            } catch (IOException ex) {
+                channel.close();
+                throw ex;
+            }
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+            Properties properties = new Properties();
+            if (Files.exists(info)) {
+                try (InputStream in = Files.newInputStream(info)) {
+                    properties.load(in);
+                }
+            }
+            String file = properties.getProperty("file");
+            long time;
+            try {
+                time = Long.parseLong(properties.getProperty("time", "0"));
+            } catch (NumberFormatException ex) {
+                time = 0;
+            }
+            if (time == 0) {
+                time = Files.getLastModifiedTime(directory.resolve(owner + JOURNAL_SUFFIX)).toMillis();
+            }
+            return new Recovery(directory.resolve(owner + JOURNAL_SUFFIX), info, lockPath, channel,
+                    file != null ? new File(file) : null, time);
+        }
+
+        private static void removeStaleLock(Path lockPath) throws IOException {
+            try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.WRITE)) {
+                if (channel.tryLock() == null) {
+                    return; // 对方仍在运行
+                }
+            } catch (OverlappingFileLockException ex) {
+                return;
+            }
+            Files.deleteIfExists(lockPath);
+        }
+
+        /**
+         * 原来的文件，新建后从未保存的文档为 null。
+         */
+        public File getOriginalFile() {
+            return originalFile;
+        }
+
+        public long getSavedTime() {
+            return savedTime;
+        }
+
+        /**
+         * 删除恢复文件。
+         */
+        public void discard() {
+            try {
+                Files.deleteIfExists(info);
+                Files.deleteIfExists(journal);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            release();
+        }
+
+        /**
+         * 暂不处理，释放锁，下次启动时再次提示。
+         */
+        public void release() {
+            try {
+                lockChannel.close();
+                Files.deleteIfExists(lockPath);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+// 文件名： BatchRenderer.java
+// 功能： 命令行批量渲染：无界面地把 .slide 文件渲染为 PNG、PDF 或缩略图，多个文件并行处理
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+
+/**
+ * 批量渲染的命令行入口，在 headless 模式下运行，不创建任何窗口：
+ * <pre>
+ * java -cp powerdot.jar BatchRenderer [选项] 文件或目录...
+ *   -f png,pdf,thumb  输出格式，默认 png
+ *   -o 目录           输出目录，默认与各 .slide 文件相同
+ *   -w 宽度           PNG 的宽度（像素），默认为幻灯片宽度
+ *   -t 宽度           缩略图的宽度（像素），默认 320
+ *   -j 线程数         同时处理的文件数，默认为处理器数
+ *   --first           只渲染每个文件的第一页（PNG 和缩略图）
+ *   --vector          PDF 使用矢量方式，默认为图片方式
+ * </pre>
+ * 目录中的 .slide 文件递归查找。deck.slide 的输出为 deck.pdf、deck/page-001.png、deck/thumb-001.png。
+ * 文件以延迟加载方式打开，图片在渲染到时才解码，内存不足时可以释放，处理大量文件时内存占用只与并行数有关。
+ * 有文件失败时退出码为 1。
+ */
+public class BatchRenderer {
+    enum Format {
+        PNG, PDF, THUMB
+    }
+
+    private final Set<Format> formats = EnumSet.noneOf(Format.class);
+    private Path outputDir;
+    private int pngWidth;
+    private int thumbWidth = 320;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean firstPageOnly;
+    private SimplePdfExporter.Mode pdfMode = SimplePdfExporter.Mode.RASTER;
+    private final List<Path> inputs = new ArrayList<>();
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true"); // 必须在任何 AWT 类初始化之前
+        BatchRenderer renderer = new BatchRenderer();
+        try {
+            renderer.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+        System.exit(renderer.run() == 0 ? 0 : 1);
+    }
+
+    private static void printUsage() {
+        System.err.println("用法: BatchRenderer [-f png,pdf,thumb] [-o 目录] [-w 宽度] [-t 宽度] [-j 线程数] [--first] [--vector]"
+                + " 文件或目录...");
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-f" -> {
+                    for (String name : value(args, ++i, arg).split(",")) {
+                        try {
+                            formats.add(Format.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+                        } catch (IllegalArgumentException ex) {
+                            throw new IllegalArgumentException("未知的输出格式: " + name);
+                        }
+                    }
+                }
+                case "-o" -> outputDir = Path.of(value(args, ++i, arg));
+                case "-w" -> pngWidth = positive(value(args, ++i, arg), arg);
+                case "-t" -> thumbWidth = positive(value(args, ++i, arg), arg);
+                case "-j" -> threads = positive(value(args, ++i, arg), arg);
+                case "--first" -> firstPageOnly = true;
+                case "--vector" -> pdfMode = SimplePdfExporter.Mode.VECTOR;
+                default -> {
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("未知的选项: " + arg);
+                    }
+                    inputs.add(Path.of(arg));
+                }
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("没有指定输入文件");
+        }
+        if (formats.isEmpty()) {
+            formats.add(Format.PNG);
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " 缺少参数");
+        }
+        return args[index];
+    }
+
+    private static int positive(String value, String option) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0) {
+                return n;
+            }
+        } catch (NumberFormatException ex) {
+            // 下面统一报错
+        }
+        throw new IllegalArgumentException(option + " 需要正整数: " + value);
+    }
+
+    /**
+     * 渲染全部输入，返回失败的文件数。
+     */
+    int run() {
+        List<Path> files = new ArrayList<>();
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> walk = Files.walk(input)) {
+                    walk.filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".slide"))
+                            .sorted().forEach(files::add);
+                } catch (IOException ex) {
+                    System.err.println(input + ": " + ex.getMessage());
+                }
+            } else {
+                files.add(input);
+            }
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, files.size())));
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> results = new ArrayList<>();
+        for (Path file : files) {
+            results.add(pool.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    renderFile(file);
+                    System.out.printf("[%d/%d] %s (%d ms)%n", done.incrementAndGet(), files.size(), file,
+                            (System.nanoTime() - start) / 1_000_000);
+                } catch (Exception | OutOfMemoryError ex) {
+                    failed.incrementAndGet();
+                    System.err.printf("[%d/%d] %s 失败: %s%n", done.incrementAndGet(), files.size(), file, ex);
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            try {
+                result.get();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+        pool.shutdown();
+        System.out.printf("完成 %d 个文件，失败 %d 个%n", files.size(), failed.get());
+        return failed.get();
+    }
+
+    private void renderFile(Path file) throws IOException, ClassNotFoundException {
+        String name = file.getFileName().toString();
+        String base = name.toLowerCase(Locale.ROOT).endsWith(".slide") ? name.substring(0, name.length() - 6) : name;
+        Path dir = outputDir != null ? outputDir : file.toAbsolutePath().getParent();
+        Slide slide = SlideFile.open(file.toFile());
+        try {
+            int slideWidth = slide.getWidth();
+            int slideHeight = slide.getHeight();
+            int pages = firstPageOnly ? Math.min(1, slide.getTotalPages()) : slide.getTotalPages();
+            if (formats.contains(Format.PNG) || formats.contains(Format.THUMB)) {
+                Files.createDirectories(dir.resolve(base));
+            }
+            for (int i = 0; i < pages; i++) {
+                SlidePage page = slide.getAllPages().get(i);
+                if (formats.contains(Format.PNG)) {
+                    int width = pngWidth > 0 ? pngWidth : slideWidth;
+                    writePng(page, slideWidth, slideHeight, width, dir.resolve(base).resolve(pageName("page", i)));
+                }
+                if (formats.contains(Format.THUMB)) {
+                    writePng(page, slideWidth, slideHeight, thumbWidth,
+                            dir.resolve(base).resolve(pageName("thumb", i)));
+                }
+            }
+            if (formats.contains(Format.PDF)) {
+                Files.createDirectories(dir);
+                SimplePdfExporter.export(slide, dir.resolve(base + ".pdf").toFile(), pdfMode, NO_PROGRESS);
+            }
+        } finally {
+            slide.close();
+        }
+    }
+
+    private static final SimplePdfExporter.Progress NO_PROGRESS = new SimplePdfExporter.Progress() {
+        @Override
+        public void pagesWritten(int done, int total) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private static String pageName(String prefix, int index) {
+        return String.format("%s-%03d.png", prefix, index + 1);
+    }
+
+    // 按宽度等比计算高度
+    private static void writePng(SlidePage page, int slideWidth, int slideHeight, int width, Path target)
+            throws IOException {
+        int height = Math.max(1, (int) Math.round((double) width * slideHeight / slideWidth));
+        BufferedImage image = PageRenderer.render(page, slideWidth, slideHeight, width, height,
+                BufferedImage.TYPE_INT_ARGB);
+        File file = target.toFile();
+        if (!ImageIO.write(image, "png", file)) {
+            throw new IOException("无法写出 PNG: " + target);
+        }
+    }
+}
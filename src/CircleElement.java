@@ -2,6 +2,8 @@
 import java.awt.Color;
 
 public class CircleElement extends OvalElement {
+    private static final long serialVersionUID = 3848997688388515584L;
+
     // MODIFIED: Constructor signature updated
     public CircleElement(int x, int y, int diameter, Color borderColor, Color fillColor, int borderThickness) {
         super(x, y, diameter, diameter, borderColor, fillColor, borderThickness);
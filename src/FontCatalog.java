@@ -0,0 +1,151 @@
+// 文件名： FontCatalog.java
+// 功能： 共享的字体目录：后台枚举系统字体，缓存 Font 实例和字体度量
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 全程序共用的字体服务：
+ * <ul>
+ * <li>系统字体族在第一次请求时于后台线程枚举，结果只计算一次；</li>
+ * <li>按（字体族、样式、字号）缓存 Font，相同设置的文本框共用同一个实例；</li>
+ * <li>FontMetrics 与 LineMetrics 按字体缓存，取自共用的测量上下文，不再为测量临时创建图像和 Graphics。</li>
+ * </ul>
+ * Font 与度量对象都不可变，所有方法可在任意线程调用。
+ */
+public final class FontCatalog {
+    // 缓存的字体或度量超过该数目时清空重建，防止异常输入（例如逐个拖动字号）无限增长
+    private static final int MAX_ENTRIES = 1024;
+
+    /**
+     * 不带变换、关闭抗锯齿和小数度量的测量上下文，与默认 BufferedImage Graphics 的度量一致。
+     */
+    public static final FontRenderContext MEASURING_CONTEXT = new FontRenderContext(null, false, false);
+
+    private static final Map<FontKey, Font> fonts = new ConcurrentHashMap<>();
+    private static final Map<Font, FontMetrics> fontMetrics = new ConcurrentHashMap<>();
+    private static final Map<MetricsKey, LineMetrics> lineMetrics = new ConcurrentHashMap<>();
+    private static final Graphics2D metricsGraphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB)
+            .createGraphics();
+    private static CompletableFuture<String[]> families;
+    private static volatile Set<String> familySet; // 小写，用于不区分大小写的查找
+
+    private FontCatalog() {
+    }
+
+    private record FontKey(String family, int style, float size) {
+    }
+
+    private record MetricsKey(Font font, FontRenderContext frc) {
+    }
+
+    /**
+     * 系统字体族名称，按字母顺序排列。第一次调用时在后台线程开始枚举，之后返回同一个结果。
+     */
+    public static synchronized CompletableFuture<String[]> families() {
+        if (families == null) {
+            CompletableFuture<String[]> future = new CompletableFuture<>();
+            families = future;
+            Thread thread = new Thread(() -> {
+                try {
+                    String[] names = GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames();
+                    Set<String> set = new HashSet<>();
+                    for (String name : names) {
+                        set.add(name.toLowerCase(Locale.ROOT));
+                    }
+                    familySet = set;
+                    future.complete(names);
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            }, "font-catalog");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return families;
+    }
+
+    /**
+     * 系统中是否有该字体族（不区分大小写）。字体尚未枚举完时等待枚举结束。
+     */
+    public static boolean isAvailable(String family) {
+        Set<String> set = familySet;
+        if (set == null) {
+            families().join();
+            set = familySet;
+        }
+        return set.contains(family.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 取得指定字体族、样式和字号的字体，同样的参数返回同一个实例。
+     */
+    public static Font getFont(String family, int style, float size) {
+        FontKey key = new FontKey(family, style, size);
+        Font font = fonts.get(key);
+        if (font == null) {
+            if (fonts.size() >= MAX_ENTRIES) {
+                fonts.clear();
+            }
+            font = fonts.computeIfAbsent(key, k -> new Font(k.family, k.style, 1).deriveFont(k.size));
+        }
+        return font;
+    }
+
+    /**
+     * 以 base 的字体族改变样式和字号。带有额外属性（下划线、变换等）的字体直接派生，不进入缓存。
+     */
+    public static Font derive(Font base, int style, float size) {
+        if (base.getStyle() == style && base.getSize2D() == size) {
+            return base;
+        }
+        if (!base.equals(getFont(base.getName(), base.getStyle(), base.getSize2D()))) {
+            return base.deriveFont(style, size);
+        }
+        return getFont(base.getName(), style, size);
+    }
+
+    /**
+     * 字体在 MEASURING_CONTEXT 下的 FontMetrics。
+     */
+    public static FontMetrics getFontMetrics(Font font) {
+        FontMetrics metrics = fontMetrics.get(font);
+        if (metrics == null) {
+            if (fontMetrics.size() >= MAX_ENTRIES) {
+                fontMetrics.clear();
+            }
+            metrics = fontMetrics.computeIfAbsent(font, f -> {
+                synchronized (metricsGraphics) {
+                    return metricsGraphics.getFontMetrics(f);
+                }
+            });
+        }
+        return metrics;
+    }
+
+    /**
+     * 字体在 frc 下的行度量，调用方只应读取上升、下降和行距。Font.getLineMetrics 的这些值与具体文字无关，
+     * 按字体和上下文缓存。frc 应为不带变换的测量上下文，见 TextLayoutEngine.measuringContext。
+     */
+    public static LineMetrics getLineMetrics(Font font, FontRenderContext frc) {
+        MetricsKey key = new MetricsKey(font, frc);
+        LineMetrics metrics = lineMetrics.get(key);
+        if (metrics == null) {
+            if (lineMetrics.size() >= MAX_ENTRIES) {
+                lineMetrics.clear();
+            }
+            metrics = lineMetrics.computeIfAbsent(key, k -> k.font.getLineMetrics(" ", k.frc));
+        }
+        return metrics;
+    }
+}
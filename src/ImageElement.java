@@ -1,24 +1,62 @@
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import javax.imageio.ImageIO;
 
 public class ImageElement extends SlideElement {
-    private transient BufferedImage image;
+    private static final long serialVersionUID = -7283357651735229626L;
+
+    private transient LazyImage image; // 从文件延迟加载的图片在第一次绘制时才解码
     private int width;
     private int height;
+    private transient boolean loading; // 占位元素：图片正在后台导入
+    private static final Color PLACEHOLDER_FILL = new Color(230, 230, 230);
 
     public ImageElement(int x, int y, BufferedImage image) {
+        this(x, y, LazyImage.of(image));
+    }
+
+    /**
+     * 使用幻灯片图片库中的图片（见 ImageStore.intern），内容相同的元素共用一份图片。
+     */
+    public ImageElement(int x, int y, LazyImage image) {
         super(x, y);
         this.image = image;
-        if (this.image != null) {
-            this.width = this.image.getWidth();
-            this.height = this.image.getHeight();
+        BufferedImage img = image != null ? image.get() : null;
+        if (img != null) {
+            this.width = img.getWidth();
+            this.height = img.getHeight();
         }
     }
 
+    /**
+     * 图片导入期间显示的占位元素，导入完成后以 setImage 填入图片。
+     */
+    public static ImageElement placeholder(Rectangle bounds) {
+        ImageElement element = new ImageElement(bounds.x, bounds.y, (LazyImage) null);
+        element.width = bounds.width;
+        element.height = bounds.height;
+        element.loading = true;
+        return element;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * 填入导入完成的图片，显示尺寸不变。
+     */
+    public void setImage(LazyImage image) {
+        this.image = image;
+        this.loading = false;
+        appearanceChanged();
+    }
+
     @Override
     public void draw(Graphics g) {
         Graphics2D g2d = (Graphics2D) g.create();
@@ -26,9 +64,15 @@ public class ImageElement extends SlideElement {
             g2d.rotate(Math.toRadians(rotation), x + width / 2.0, y + height / 2.0);
         }
 
-        if (image != null) {
-            g2d.drawImage(image, x, y, width, height, null);
-        } else {
+        if (loading) {
+            // 图片仍在后台解码，先显示占位框
+            g2d.setColor(PLACEHOLDER_FILL);
+            g2d.fillRect(x, y, width, height);
+            g2d.setColor(Color.GRAY);
+            g2d.drawRect(x, y, width, height);
+            g2d.drawString("正在导入图片...", x + 10, y + 20);
+        } else if (!ImageMipmaps.draw(g2d, image, x, y, width, height)) {
+            // ImageMipmaps.draw 按实际显示的像素尺寸选用缩小过的图片，返回 false 表示图片无法读取
             g2d.setColor(Color.RED);
             g2d.drawRect(x, y, 100, 100);
             g2d.drawString("图片丢失", x + 10, y + 50);
@@ -55,25 +99,47 @@ public Point getRotationCenter() {
         return new Rectangle(x, y, width, height);
     }
 
+    public BufferedImage getImage() {
+        return image != null ? image.get() : null;
+    }
+
     @Override
     public void setBounds(Rectangle bounds) {
         this.x = bounds.x;
         this.y = bounds.y;
         this.width = bounds.width;
         this.height = bounds.height;
+        boundsChanged();
+    }
+
+    @Override
+    void writeData(DataOutput out, SlideFile.ImageSink images) throws IOException {
+        super.writeData(out, images);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(image != null ? images.add(image) : -1);
+    }
+
+    @Override
+    void readData(DataInput in, SlideFile.ImageSource images) throws IOException {
+        super.readData(in, images);
+        width = in.readInt();
+        height = in.readInt();
+        image = images.get(in.readInt());
     }
 
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.defaultWriteObject();
-        if (image != null) {
-            ImageIO.write(image, "png", out);
+        BufferedImage img = getImage();
+        if (img != null) {
+            ImageIO.write(img, "png", out);
         }
     }
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
         try {
-            image = ImageIO.read(in);
+            image = LazyImage.of(ImageIO.read(in));
         } catch (IOException e) {
             e.printStackTrace();
             image = null;
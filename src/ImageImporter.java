@@ -0,0 +1,178 @@
+// 文件名： ImageImporter.java
+// 功能： 导入图片：先读尺寸，再按幻灯片大小降采样解码，大照片不再以原始分辨率常驻内存
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * 插入图片和背景图片的读取。只从文件头读取尺寸，不解码像素；解码时用 ImageReadParam 的源降采样
+ * 直接得到接近目标大小的图片，解码器逐行读取，内存占用只与结果大小有关：5000 万像素的照片插入到
+ * 1280x720 的幻灯片中，得到的图片不超过 2560x1440。
+ * <p>
+ * 最大尺寸为幻灯片宽高乘以 MAX_SCALE（默认 2，放大显示时仍然清晰），可用 -Dpowerdot.import.maxScale 设置。
+ */
+public final class ImageImporter {
+    public static final double MAX_SCALE = maxScale();
+
+    private ImageImporter() {
+    }
+
+    private static double maxScale() {
+        try {
+            double scale = Double.parseDouble(System.getProperty("powerdot.import.maxScale", "2"));
+            return scale > 0 ? scale : 2;
+        } catch (NumberFormatException ex) {
+            return 2;
+        }
+    }
+
+    /**
+     * 图片的原始尺寸，只读取文件头。
+     */
+    public static Dimension readSize(File file) throws IOException {
+        try (ImageInputStream in = open(file)) {
+            ImageReader reader = readerFor(in);
+            try {
+                reader.setInput(in, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 读取图片，结果不超过 maxWidth x maxHeight（保持宽高比，小图保持原样）。
+     * 通过 progress 报告解码进度，取消时抛出 InterruptedIOException。
+     */
+    public static BufferedImage read(File file, int maxWidth, int maxHeight, TaskProgress progress)
+            throws IOException {
+        try (ImageInputStream in = open(file)) {
+            ImageReader reader = readerFor(in);
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                // 取整数倍降采样，使结果仍不小于目标，剩下不到两倍的部分最后平滑缩小
+                double ratio = Math.max((double) width / maxWidth, (double) height / maxHeight);
+                int step = Math.max(1, (int) Math.floor(ratio));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                reader.addIIOReadProgressListener(new ProgressAdapter(progress));
+                BufferedImage image = reader.read(0, param);
+                progress.checkCancelled(); // 解码被中止时 read 返回不完整的图片
+                return fit(image, maxWidth, maxHeight);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 按幻灯片尺寸限制读取图片，见 MAX_SCALE。
+     */
+    public static BufferedImage readForSlide(File file, Slide slide, TaskProgress progress) throws IOException {
+        return read(file, maxWidth(slide), maxHeight(slide), progress);
+    }
+
+    public static int maxWidth(Slide slide) {
+        return Math.max(1, (int) Math.round(slide.getWidth() * MAX_SCALE));
+    }
+
+    public static int maxHeight(Slide slide) {
+        return Math.max(1, (int) Math.round(slide.getHeight() * MAX_SCALE));
+    }
+
+    private static ImageInputStream open(File file) throws IOException {
+        ImageInputStream in = ImageIO.createImageInputStream(file);
+        if (in == null) {
+            throw new IOException("无法打开文件 " + file.getName());
+        }
+        return in;
+    }
+
+    private static ImageReader readerFor(ImageInputStream in) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            throw new IOException("不支持的图片格式");
+        }
+        return readers.next();
+    }
+
+    // 超出限制时等比缩小，此时缩放比例小于 2，双线性插值即可
+    private static BufferedImage fit(BufferedImage image, int maxWidth, int maxHeight) {
+        double scale = Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight());
+        if (scale >= 1) {
+            return image;
+        }
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        int type = image.getTransparency() == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB
+                : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage scaled = new BufferedImage(width, height, type);
+        Graphics2D g2d = scaled.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(image, 0, 0, width, height, null);
+        g2d.dispose();
+        return scaled;
+    }
+
+    // 把解码进度转给 TaskProgress，取消时中止解码
+    private static final class ProgressAdapter implements IIOReadProgressListener {
+        private final TaskProgress progress;
+
+        ProgressAdapter(TaskProgress progress) {
+            this.progress = progress;
+        }
+
+        @Override
+        public void imageProgress(ImageReader source, float percentageDone) {
+            progress.progress(Math.round(percentageDone), 100);
+            if (progress.isCancelled()) {
+                source.abort();
+            }
+        }
+
+        @Override
+        public void sequenceStarted(ImageReader source, int minIndex) {
+        }
+
+        @Override
+        public void sequenceComplete(ImageReader source) {
+        }
+
+        @Override
+        public void imageStarted(ImageReader source, int imageIndex) {
+        }
+
+        @Override
+        public void imageComplete(ImageReader source) {
+        }
+
+        @Override
+        public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {
+        }
+
+        @Override
+        public void thumbnailProgress(ImageReader source, float percentageDone) {
+        }
+
+        @Override
+        public void thumbnailComplete(ImageReader source) {
+        }
+
+        @Override
+        public void readAborted(ImageReader source) {
+        }
+    }
+}
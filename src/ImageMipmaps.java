@@ -0,0 +1,232 @@
+// 文件名： ImageMipmaps.java
+// 功能： 图片的逐级缩小版本（mipmap），按绘制时的实际像素尺寸选用，避免每次从原图缩放
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 元素图片和背景图片的缩小版本缓存。第 k 级为原图宽高各缩小 2^k 倍，逐级对半缩小生成（每级相当于 2x2 平均），
+ * 画质好于一次从大图缩小很多倍。绘制时按目标区域在设备上的像素尺寸（包括编辑器缩放、缩略图缩小和旋转）
+ * 选不小于该尺寸的最小一级，再由 drawImage 做剩下不到两倍的缩放；一张 6000x4000 的照片放在 300 像素的框里，
+ * 每次只需缩放 375x250 的一级。
+ * <p>
+ * 缩小后的图片采用屏幕兼容的像素格式（headless 时为 INT_RGB / INT_ARGB_PRE），绘制走加速或最快的路径；
+ * 原图本身格式不是常用的 int 格式（例如 JPEG 解码得到的 3BYTE_BGR）时，第 0 级也转换一份。
+ * 缓存的总大小不超过最大堆的八分之一（最多 256 MB），超出时淘汰最久未用的级别；缓存的级别可以直接绘制，
+ * 不需要再解码从文件延迟加载的原图。图片内容不会改变，因此缓存不需要失效。缓存只弱引用 LazyImage，
+ * 文档关闭后其图片（以及延迟加载所用的文件）照常回收，对应的级别随之移出缓存。线程安全。
+ */
+public final class ImageMipmaps {
+    private static final long BUDGET = Math.min(Runtime.getRuntime().maxMemory() / 8, 256L << 20);
+
+    private static final Map<LazyImage, int[]> sourceSizes = new WeakHashMap<>(); // LazyImage 按对象标识比较
+    private static final LinkedHashMap<Level, BufferedImage> levels = new LinkedHashMap<>(64, 0.75f, true);
+    private static final ReferenceQueue<LazyImage> collected = new ReferenceQueue<>();
+    private static long cachedBytes;
+    private static GraphicsConfiguration screenConfiguration;
+
+    private ImageMipmaps() {
+    }
+
+    // 按 LazyImage 对象标识和级别比较的弱引用键；缓存中的键在图片被回收后进入 collected 队列
+    private static final class Level extends WeakReference<LazyImage> {
+        private final int level;
+        private final int hash;
+
+        Level(LazyImage image, int level, ReferenceQueue<LazyImage> queue) {
+            super(image, queue);
+            this.level = level;
+            this.hash = 31 * System.identityHashCode(image) + level;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            LazyImage image = get();
+            return o instanceof Level k && k.level == level && image != null && k.get() == image;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 把 image 绘制到 g2d 的 (x, y, width, height) 区域，按 g2d 当前变换选用合适的级别。
+     * 图片无法读取时返回 false，由调用方绘制占位内容。
+     */
+    public static boolean draw(Graphics2D g2d, LazyImage image, int x, int y, int width, int height) {
+        if (image == null) {
+            return false;
+        }
+        AffineTransform t = g2d.getTransform();
+        double deviceWidth = width * Math.hypot(t.getScaleX(), t.getShearY());
+        double deviceHeight = height * Math.hypot(t.getShearX(), t.getScaleY());
+        BufferedImage level = forSize(image, deviceWidth, deviceHeight);
+        if (level == null) {
+            return false;
+        }
+        g2d.drawImage(level, x, y, width, height, null);
+        return true;
+    }
+
+    /**
+     * 绘制到 deviceWidth x deviceHeight 设备像素时使用的图片：宽高都不小于目标尺寸的最小一级，
+     * 目标不小于原图的一半时为原图（或其兼容格式的副本）。
+     */
+    static BufferedImage forSize(LazyImage image, double deviceWidth, double deviceHeight) {
+        int[] size;
+        synchronized (ImageMipmaps.class) {
+            size = sourceSizes.get(image);
+        }
+        BufferedImage source = null;
+        if (size == null) {
+            source = image.get();
+            if (source == null) {
+                return null;
+            }
+            size = new int[] { source.getWidth(), source.getHeight() };
+            synchronized (ImageMipmaps.class) {
+                sourceSizes.put(image, size);
+            }
+        }
+        int level = chooseLevel(size[0], size[1], deviceWidth, deviceHeight);
+        BufferedImage cached = lookup(image, level);
+        if (cached != null) {
+            return cached;
+        }
+        if (source == null) {
+            source = image.get();
+            if (source == null) {
+                return null;
+            }
+        }
+        if (level == 0) {
+            if (isFastFormat(source) || (long) size[0] * size[1] * 4 > BUDGET / 4) {
+                return source; // 原图已是常用格式，或者大到不值得再复制一份
+            }
+            return store(image, 0, convert(source, size[0], size[1]));
+        }
+
+        // 从已缓存的最近一级（没有时从原图）开始逐级对半缩小，中间级别不缓存
+        BufferedImage current = source;
+        int from = 0;
+        for (int k = level - 1; k >= 1; k--) {
+            BufferedImage larger = lookup(image, k);
+            if (larger != null) {
+                current = larger;
+                from = k;
+                break;
+            }
+        }
+        for (int k = from; k < level; k++) {
+            current = convert(current, Math.max(1, current.getWidth() / 2), Math.max(1, current.getHeight() / 2));
+        }
+        return store(image, level, current);
+    }
+
+    // 宽高都不小于目标的最小一级
+    private static int chooseLevel(int width, int height, double deviceWidth, double deviceHeight) {
+        int level = 0;
+        while (width > 1 || height > 1) {
+            int w = Math.max(1, width / 2);
+            int h = Math.max(1, height / 2);
+            if (w < deviceWidth || h < deviceHeight) {
+                break;
+            }
+            width = w;
+            height = h;
+            level++;
+        }
+        return level;
+    }
+
+    private static boolean isFastFormat(BufferedImage image) {
+        int type = image.getType();
+        return type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB
+                || type == BufferedImage.TYPE_INT_ARGB_PRE;
+    }
+
+    // 以兼容格式创建 width x height 的副本，双线性插值缩放
+    private static BufferedImage convert(BufferedImage source, int width, int height) {
+        BufferedImage target = createCompatible(width, height, source.getTransparency());
+        Graphics2D g2d = target.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(source, 0, 0, width, height, null);
+        g2d.dispose();
+        return target;
+    }
+
+    private static BufferedImage createCompatible(int width, int height, int transparency) {
+        GraphicsConfiguration gc = screenConfiguration();
+        if (gc != null) {
+            return gc.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height, transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB
+                : BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    private static synchronized GraphicsConfiguration screenConfiguration() {
+        if (screenConfiguration == null && !GraphicsEnvironment.isHeadless()) {
+            screenConfiguration = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration();
+        }
+        return screenConfiguration;
+    }
+
+    private static synchronized BufferedImage lookup(LazyImage image, int level) {
+        expungeCollected();
+        return levels.get(new Level(image, level, null));
+    }
+
+    // 存入缓存并按需淘汰最久未用的级别；其他线程已存入同一级别时返回已有的
+    private static synchronized BufferedImage store(LazyImage image, int level, BufferedImage scaled) {
+        expungeCollected();
+        Level key = new Level(image, level, collected);
+        BufferedImage existing = levels.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        long bytes = sizeOf(scaled);
+        if (bytes > BUDGET / 4) {
+            return scaled; // 单个级别太大，不占用缓存
+        }
+        Iterator<BufferedImage> eldest = levels.values().iterator();
+        while (cachedBytes + bytes > BUDGET && eldest.hasNext()) {
+            cachedBytes -= sizeOf(eldest.next());
+            eldest.remove();
+        }
+        levels.put(key, scaled);
+        cachedBytes += bytes;
+        return scaled;
+    }
+
+    // 移除已被回收的图片的所有级别（调用方持有锁）
+    private static void expungeCollected() {
+        Reference<? extends LazyImage> ref;
+        while ((ref = collected.poll()) != null) {
+            BufferedImage removed = levels.remove(ref);
+            if (removed != null) {
+                cachedBytes -= sizeOf(removed);
+            }
+        }
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+}
@@ -0,0 +1,121 @@
+// 文件名： ImageStore.java
+// 功能： 幻灯片范围的图片库，按像素内容的哈希合并相同的图片
+import java.awt.image.BufferedImage;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * 一个幻灯片中所有图片的登记表，键为像素内容的 SHA-256。
+ * 插入图片、设置背景和从文件读取时都经过 intern，内容相同的图片共用一个 LazyImage，
+ * 内存中只解码一份，保存时只写一个图片块。
+ * <p>
+ * 登记表只弱引用图片：元素、页面背景和撤销记录对 LazyImage 的引用就是它的引用计数，
+ * 全部释放后条目随垃圾回收自动清除，删除元素或页面时不必逐一登记。所有方法线程安全。
+ */
+public class ImageStore {
+    private final Map<String, Entry> images = new HashMap<>();
+    private final ReferenceQueue<LazyImage> released = new ReferenceQueue<>();
+
+    /**
+     * 返回内容与 image 相同的已登记图片，没有则登记并返回 image 的包装。image 为 null 时返回 null。
+     */
+    public synchronized LazyImage intern(BufferedImage image) {
+        if (image == null) {
+            return null;
+        }
+        String hash = contentHash(image);
+        LazyImage existing = lookup(hash);
+        if (existing != null) {
+            return existing;
+        }
+        LazyImage lazy = LazyImage.of(image, hash);
+        register(hash, lazy);
+        return lazy;
+    }
+
+    /**
+     * 登记从文件读取的图片。哈希未知（旧文件）时不登记，直接返回 image。
+     */
+    synchronized LazyImage intern(LazyImage image) {
+        String hash = image.knownHash();
+        if (hash == null) {
+            return image;
+        }
+        LazyImage existing = lookup(hash);
+        if (existing != null) {
+            return existing;
+        }
+        register(hash, image);
+        return image;
+    }
+
+    /**
+     * 当前登记的图片数（含已不再使用、尚未被回收的图片）。
+     */
+    public synchronized int size() {
+        expunge();
+        return images.size();
+    }
+
+    private LazyImage lookup(String hash) {
+        expunge();
+        Entry entry = images.get(hash);
+        return entry == null ? null : entry.get();
+    }
+
+    private void register(String hash, LazyImage image) {
+        images.put(hash, new Entry(hash, image, released));
+    }
+
+    // 清除已被回收的图片的条目
+    private void expunge() {
+        Entry entry;
+        while ((entry = (Entry) released.poll()) != null) {
+            images.remove(entry.hash, entry);
+        }
+    }
+
+    /**
+     * 图片像素内容的哈希（SHA-256 的十六进制形式），包含宽高。
+     */
+    public static String contentHash(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        return contentHash(w, h, image.getRGB(0, 0, w, h, null, 0, w));
+    }
+
+    public static String contentHash(int w, int h, int[] argb) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(8, w * 4));
+        buffer.putInt(w).putInt(h);
+        buffer.flip();
+        digest.update(buffer);
+        for (int y = 0; y < h; y++) {
+            buffer.clear();
+            buffer.asIntBuffer().put(argb, y * w, w);
+            buffer.limit(w * 4);
+            digest.update(buffer);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static final class Entry extends WeakReference<LazyImage> {
+        final String hash;
+
+        Entry(String hash, LazyImage image, ReferenceQueue<LazyImage> queue) {
+            super(image, queue);
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+// 文件名： LazyImage.java
+// 功能： 元素和页面背景引用的图片，可以常驻内存，也可以在第一次使用时从 .slide 文件中解码
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+
+/**
+ * 图片的持有者。新插入的图片直接保存在内存中；从文件延迟加载的图片只记录所在的块，
+ * 第一次绘制时才读取和解码，解码结果用软引用缓存，内存不足时由垃圾回收器释放，之后再用到时重新解码。
+ * <p>
+ * 图片内容创建后不再修改。所有方法线程安全：读取和解码不持有本对象的锁，
+ * 因此不会与正在切换文件的 SlideArchive 互相等待。
+ */
+public final class LazyImage {
+    private BufferedImage strong; // 尚未保存到文件的图片
+    private SoftReference<BufferedImage> cached;
+    private SlideArchive archive;
+    private SlideFile.Chunk chunk;
+    private byte[] encoded; // 所在文件被替换时暂存的编码数据
+    private String hash; // 像素内容的哈希（见 ImageStore），未知时为 null
+
+    private LazyImage() {
+    }
+
+    /**
+     * 包装内存中的图片，image 为 null 时返回 null。
+     */
+    public static LazyImage of(BufferedImage image) {
+        return of(image, null);
+    }
+
+    static LazyImage of(BufferedImage image, String hash) {
+        if (image == null) {
+            return null;
+        }
+        LazyImage lazy = new LazyImage();
+        lazy.strong = image;
+        lazy.hash = hash;
+        return lazy;
+    }
+
+    static LazyImage inArchive(SlideArchive archive, SlideFile.Chunk chunk, String hash) {
+        LazyImage lazy = new LazyImage();
+        lazy.archive = archive;
+        lazy.chunk = chunk;
+        lazy.hash = hash;
+        return lazy;
+    }
+
+    /**
+     * 取得图片，必要时读取并解码。读取失败时打印异常并返回 null，由调用方按图片丢失处理。
+     */
+    public BufferedImage get() {
+        try {
+            BufferedImage image = cachedImage();
+            if (image != null) {
+                return image;
+            }
+            Binding binding = binding();
+            image = SlideFile.decodeImage(binding.bytes());
+            synchronized (this) {
+                if (binding.isCurrent(this)) {
+                    cached = new SoftReference<>(image);
+                }
+            }
+            return image;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 图片在 .slide 文件中的编码数据。来自文件的图片直接复制原来的块，不重新编码。
+     */
+    byte[] encoded() throws IOException {
+        BufferedImage image;
+        synchronized (this) {
+            image = strong;
+        }
+        return image != null ? SlideFile.encodeImage(image) : binding().bytes();
+    }
+
+    /**
+     * 保存后改为引用新文件中的块。内存中的图片从此也可以被回收，需要时从新文件重新读取。
+     */
+    synchronized void rebind(SlideArchive archive, SlideFile.Chunk chunk) {
+        if (strong != null) {
+            cached = new SoftReference<>(strong);
+            strong = null;
+        }
+        this.archive = archive;
+        this.chunk = chunk;
+        this.encoded = null;
+    }
+
+    /**
+     * 所在文件即将被替换且本图片没有写入新文件（例如只被撤销记录引用）时调用，把编码数据读入内存。
+     */
+    void detach() throws IOException {
+        Binding binding = binding();
+        synchronized (this) {
+            if (binding.archive != null && binding.isCurrent(this)) {
+                encoded = binding.bytes();
+                archive = null;
+                chunk = null;
+            }
+        }
+    }
+
+    /**
+     * 图片是否只在内存中（尚未保存到文件），此时 encoded 需要重新编码。
+     */
+    synchronized boolean inMemory() {
+        return strong != null;
+    }
+
+    synchronized String knownHash() {
+        return hash;
+    }
+
+    /**
+     * 像素内容的哈希，未知时解码图片计算一次。图片无法读取时返回 null。
+     */
+    String contentHash() {
+        String known = knownHash();
+        if (known != null) {
+            return known;
+        }
+        BufferedImage image = get();
+        if (image == null) {
+            return null;
+        }
+        String computed = ImageStore.contentHash(image);
+        synchronized (this) {
+            hash = computed;
+        }
+        return computed;
+    }
+
+    /**
+     * 图片在 archive 中所在的块，不在其中时返回 null。
+     */
+    synchronized SlideFile.Chunk chunkIn(SlideArchive archive) {
+        return this.archive == archive ? chunk : null;
+    }
+
+    private synchronized BufferedImage cachedImage() {
+        if (strong != null) {
+            return strong;
+        }
+        return cached == null ? null : cached.get();
+    }
+
+    // 在锁内取得数据来源的快照，读取在锁外进行
+    private Binding binding() throws IOException {
+        for (;;) {
+            Binding binding;
+            synchronized (this) {
+                binding = new Binding(archive, chunk, encoded);
+            }
+            try {
+                return binding.load();
+            } catch (IOException ex) {
+                // 读取期间文件被切换，旧位置已失效：按新的位置重试
+                synchronized (this) {
+                    if (binding.isCurrent(this)) {
+                        throw ex;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Binding {
+        final SlideArchive archive;
+        final SlideFile.Chunk chunk;
+        byte[] data;
+
+        Binding(SlideArchive archive, SlideFile.Chunk chunk, byte[] data) {
+            this.archive = archive;
+            this.chunk = chunk;
+            this.data = data;
+        }
+
+        Binding load() throws IOException {
+            if (data == null) {
+                if (archive == null) {
+                    throw new IOException("图片数据不可用");
+                }
+                data = archive.read(chunk);
+            }
+            return this;
+        }
+
+        byte[] bytes() {
+            return data;
+        }
+
+        boolean isCurrent(LazyImage owner) {
+            return owner.archive == archive && owner.chunk == chunk;
+        }
+    }
+}
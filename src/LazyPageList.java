@@ -0,0 +1,224 @@
+// 文件名： LazyPageList.java
+// 功能： 延迟加载的页面列表，页面在第一次被访问时才从 .slide 文件中读取
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * SlideFile.open 打开的幻灯片的页面列表。每一项是已读取的 SlidePage，或是尚未读取的页面块；
+ * get 第一次访问某页时才读取它，页面中的图片此时也只是占位，绘制时才解码（见 LazyImage）。
+ * 引用同一图片块或内容相同的图片块的元素共用一个 LazyImage（见 ImageStore）。
+ * <p>
+ * indexOf 和 contains 按对象标识只在已读取的页面中查找，不会因此读取整个文件。
+ * 所有方法线程安全，锁的顺序为本列表、SlideArchive、LazyImage。
+ */
+final class LazyPageList extends AbstractList<SlidePage> implements RandomAccess {
+    private final SlideArchive archive;
+    private final List<Object> slots; // SlidePage 或 SlideFile.Chunk
+    private LazyImage[] images; // 下标为文件中的图片编号
+    // 曾经绑定到本文件的全部图片，切换文件时据此找出需要改写位置或读入内存的图片
+    private final Set<LazyImage> bound = Collections.newSetFromMap(new IdentityHashMap<>());
+    private volatile SlideFileState fileState;
+    private int epoch; // 每次切换文件后递增，旧文件中的块随之失效
+
+    private final SlideFile.ImageSource imageSource = index -> index >= 0 && index < images.length ? images[index]
+            : null;
+
+    LazyPageList(SlideArchive archive, SlideFile.Toc toc, ImageStore store) {
+        this.archive = archive;
+        this.slots = new ArrayList<>(toc.pages);
+        this.images = new LazyImage[toc.blobs.size()];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = store.intern(LazyImage.inArchive(archive, toc.blobs.get(i), toc.blobHashes.get(i)));
+        }
+        bound.addAll(Arrays.asList(images));
+    }
+
+    /**
+     * 关联文件状态：登记图片编号，之后读取的页面也登记到其中，未修改的页面保存时不必重写。
+     */
+    synchronized void attach(SlideFileState state) {
+        fileState = state;
+        for (int i = 0; i < images.length; i++) {
+            state.registerBlob(images[i], i);
+        }
+    }
+
+    @Override
+    public synchronized SlidePage get(int index) {
+        Object slot = slots.get(index);
+        if (slot instanceof SlidePage page) {
+            return page;
+        }
+        SlideFile.Chunk chunk = (SlideFile.Chunk) slot;
+        SlidePage page = readPage(index, chunk);
+        slots.set(index, page);
+        SlideFileState state = fileState;
+        if (state != null) {
+            state.pageStored(page, chunk);
+        }
+        return page;
+    }
+
+    /**
+     * 尚未读取的页面所在的块；页面已读取时返回 null。
+     */
+    synchronized SlideFile.Chunk slotChunk(int index) {
+        Object slot = slots.get(index);
+        return slot instanceof SlideFile.Chunk chunk ? chunk : null;
+    }
+
+    /**
+     * 取得页面但不保留：尚未读取的页面临时读取一份，供保存时逐页写出而不把整个文件读入内存。
+     */
+    synchronized SlidePage peek(int index) {
+        Object slot = slots.get(index);
+        return slot instanceof SlidePage page ? page : readPage(index, (SlideFile.Chunk) slot);
+    }
+
+    /**
+     * 把各项（已读取的 SlidePage 或尚未读取的页面块）复制到 out，返回块所属文件的版本号，供 readDetached 使用。
+     */
+    synchronized int snapshot(List<Object> out) {
+        out.addAll(slots);
+        return epoch;
+    }
+
+    /**
+     * 在其他线程读取快照中尚未读取的页面，不放入列表。其间切换过文件（块已失效）时抛出 IOException。
+     */
+    synchronized SlidePage readDetached(SlideFile.Chunk chunk, int expectedEpoch) throws IOException {
+        if (expectedEpoch != epoch) {
+            throw new IOException("文件已切换");
+        }
+        return SlideFile.readPage(archive.read(chunk), imageSource);
+    }
+
+    private SlidePage readPage(int index, SlideFile.Chunk chunk) {
+        try {
+            return SlideFile.readPage(archive.read(chunk), imageSource);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("无法读取第 " + (index + 1) + " 页", ex);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    @Override
+    public synchronized SlidePage set(int index, SlidePage page) {
+        SlidePage old = get(index);
+        slots.set(index, page);
+        return old;
+    }
+
+    @Override
+    public synchronized void add(int index, SlidePage page) {
+        slots.add(index, page);
+        modCount++;
+    }
+
+    @Override
+    public synchronized SlidePage remove(int index) {
+        SlidePage old = get(index);
+        slots.remove(index);
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public synchronized int indexOf(Object o) {
+        for (int i = 0; i < slots.size(); i++) {
+            if (slots.get(i) == o) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized int lastIndexOf(Object o) {
+        for (int i = slots.size() - 1; i >= 0; i--) {
+            if (slots.get(i) == o) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * 新文件写到临时文件之后调用（完整保存或整理）：move 把临时文件移动到 target，随后改为从 target 读取。
+     * pageRemap 把尚未读取的页面的旧块映射到新块；bindings 为新文件中的图片及其所在的块；
+     * newImages 为新文件的图片编号表，编号不变时为 null（不在 bindings 中的编号随之清空）。
+     * 仍引用旧文件却不在新文件中的图片（例如只被撤销记录引用）先把数据读入内存。
+     */
+    synchronized void switchTo(Path target, SlideArchive.IORunnable move,
+            Map<SlideFile.Chunk, SlideFile.Chunk> pageRemap, Map<LazyImage, SlideFile.Chunk> bindings,
+            LazyImage[] newImages) throws IOException {
+        for (LazyImage image : bound) {
+            if (!bindings.containsKey(image) && image.chunkIn(archive) != null) {
+                image.detach();
+            }
+        }
+        LazyImage[] table = newImages != null ? newImages : images.clone();
+        if (newImages == null) {
+            for (int i = 0; i < table.length; i++) {
+                if (table[i] != null && !bindings.containsKey(table[i])) {
+                    table[i] = null; // 已从文件中删除的图片，没有尚未读取的页面引用它
+                }
+            }
+        }
+        archive.switchTo(target, move, () -> {
+            for (int i = 0; i < slots.size(); i++) {
+                if (slots.get(i) instanceof SlideFile.Chunk chunk) {
+                    slots.set(i, pageRemap.get(chunk));
+                }
+            }
+            bindings.forEach((image, chunk) -> image.rebind(archive, chunk));
+            images = table;
+            epoch++;
+        });
+        bound.clear();
+        bound.addAll(bindings.keySet());
+    }
+
+    /**
+     * 增量保存向本文件追加了图片块之后调用：新图片改为从文件读取，内存中的像素可以被回收。
+     */
+    synchronized void appended(Map<LazyImage, SlideFile.Chunk> blobs) throws IOException {
+        if (blobs.isEmpty()) {
+            return;
+        }
+        archive.refresh();
+        blobs.forEach((image, chunk) -> image.rebind(archive, chunk));
+        bound.addAll(blobs.keySet());
+    }
+
+    void setFileState(SlideFileState state) {
+        fileState = state;
+    }
+
+    void close() {
+        try {
+            archive.close();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+}
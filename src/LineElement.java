@@ -2,8 +2,13 @@
 // 文件名： LineElement.java
 // 功能： 表示幻灯片中的一条直线元素
 import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 public class LineElement extends SlideElement {
+    private static final long serialVersionUID = -5469288348494269122L;
+
     private int x2, y2;
     private Color color;
     private int thickness;// 线条粗细
@@ -30,7 +35,7 @@ public class LineElement extends SlideElement {
         }
 
         g2d.setColor(color);
-        g2d.setStroke(new BasicStroke(thickness));
+        g2d.setStroke(StyleCache.solid(thickness));
         g2d.drawLine(x, y, x2, y2);
         g2d.dispose();
     }
@@ -47,9 +52,11 @@ public class LineElement extends SlideElement {
 
     @Override
     public void move(int dx, int dy) {
-        super.move(dx, dy);
+        this.x += dx;
+        this.y += dy;
         this.x2 += dx;
         this.y2 += dy;
+        boundsChanged();
     }
 
     @Override
@@ -64,6 +71,7 @@ public class LineElement extends SlideElement {
 
     public void setColor(Color color) {
         this.color = color;
+        appearanceChanged();
     }
 
     public Color getColor() {
@@ -76,6 +84,31 @@ public class LineElement extends SlideElement {
 
     public void setThickness(int thickness) {
         this.thickness = thickness;
+        boundsChanged();
+    }
+
+    @Override
+    void writeData(DataOutput out, SlideFile.ImageSink images) throws IOException {
+        super.writeData(out, images);
+        out.writeInt(x2);
+        out.writeInt(y2);
+        SlideFile.writeColor(out, color);
+        out.writeInt(thickness);
+    }
+
+    @Override
+    void readData(DataInput in, SlideFile.ImageSource images) throws IOException {
+        super.readData(in, images);
+        x2 = in.readInt();
+        y2 = in.readInt();
+        color = SlideFile.readColor(in);
+        thickness = in.readInt();
+    }
+
+    @Override
+    protected int getStrokeOutset() {
+        // 默认方形线帽沿线方向也会延伸半个线宽，对角时接近整个线宽；getBounds() 已留 5 像素边距
+        return Math.max(0, thickness - 4);
     }
 
     /**
@@ -88,6 +121,7 @@ public class LineElement extends SlideElement {
         this.y = bounds.y;
         this.x2 = bounds.x + bounds.width;
         this.y2 = bounds.y + bounds.height;
+        boundsChanged();
     }
 
     // 获取起点和终点的控制点矩形区域
@@ -105,11 +139,13 @@ public class LineElement extends SlideElement {
     public void moveStartPoint(int dx, int dy) {
         this.x += dx;
         this.y += dy;
+        boundsChanged();
     }
 
     public void moveEndPoint(int dx, int dy) {
         this.x2 += dx;
         this.y2 += dy;
+        boundsChanged();
     }
 
     public Point getStartPoint() {
@@ -126,6 +162,7 @@ public class LineElement extends SlideElement {
         this.x2 = end.x;
         this.y2 = end.y;
          this.rotationCenter = new Point((x + x2) / 2, (y + y2) / 2);
+        boundsChanged();
     }
     @Override
     public Point getRotationCenter() {
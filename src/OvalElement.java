@@ -3,6 +3,8 @@
 import java.awt.*;
 
 public class OvalElement extends ShapeElement {
+    private static final long serialVersionUID = -1591572450903569166L;
+
     // MODIFIED: Constructor signature updated
     public OvalElement(int x, int y, int width, int height, Color borderColor, Color fillColor, int borderThickness) {
         super(x, y, width, height, borderColor, fillColor, borderThickness);
@@ -27,8 +29,7 @@ public Point getRotationCenter() {
 
         if (borderColor != null && borderThickness > 0) {
             // MODIFIED: Set the stroke before drawing the border
-            g2d.setStroke(new BasicStroke(borderThickness, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f,
-                    dashArray, 0.0f));
+            g2d.setStroke(getBorderStroke());
             g2d.setColor(borderColor);
             g2d.drawOval(x, y, width, height);
         }
@@ -0,0 +1,62 @@
+// 文件名： PageRenderer.java
+// 功能： 把页面渲染为图像，供导出、放映、缩略图和命令行批量渲染共用
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * 页面的离屏渲染。背景铺满整个输出区域，元素按宽、高缩放比例中较小的一个等比缩放；
+ * 输出尺寸与幻灯片比例相同时两者一致。不依赖任何界面组件，可以在任意线程和 headless 模式下使用，
+ * 只要渲染期间页面不被修改。
+ */
+public final class PageRenderer {
+    private PageRenderer() {
+    }
+
+    /**
+     * 把页面渲染为 width x height 的图像，imageType 为 BufferedImage 的图像类型。
+     */
+    public static BufferedImage render(SlidePage page, int slideWidth, int slideHeight, int width, int height,
+            int imageType) {
+        return render(page, page.getElements(), slideWidth, slideHeight, width, height, imageType);
+    }
+
+    /**
+     * 同 render，elements 为调用方取得的元素快照（例如在 EDT 上复制，交给后台线程渲染）。
+     */
+    public static BufferedImage render(SlidePage page, List<SlideElement> elements, int slideWidth, int slideHeight,
+            int width, int height, int imageType) {
+        BufferedImage image = new BufferedImage(width, height, imageType);
+        Graphics2D g2d = image.createGraphics();
+        paint(g2d, page, elements, slideWidth, slideHeight, width, height);
+        g2d.dispose();
+        return image;
+    }
+
+    /**
+     * 在 g2d 的 (0, 0, width, height) 区域绘制页面，完成后恢复 g2d 的变换。
+     */
+    public static void paint(Graphics2D g2d, SlidePage page, List<SlideElement> elements, int slideWidth,
+            int slideHeight, int width, int height) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        AffineTransform base = g2d.getTransform();
+        double scaleX = (double) width / slideWidth;
+        double scaleY = (double) height / slideHeight;
+
+        // 背景（纯色/渐变/图片）按幻灯片尺寸绘制，拉伸到整个区域
+        g2d.scale(scaleX, scaleY);
+        page.renderBackground(g2d, slideWidth, slideHeight);
+        g2d.setTransform(base);
+
+        double scale = Math.min(scaleX, scaleY);
+        g2d.scale(scale, scale);
+        for (SlideElement element : elements) {
+            element.draw(g2d);
+        }
+        g2d.setTransform(base);
+    }
+}
@@ -0,0 +1,198 @@
+// 文件名： PdfFontSubsets.java
+// 功能： 矢量 PDF 导出时收集用到的字形，生成嵌入文档的 Type 3 字体子集
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * 整个文档共用的字体子集。Java 取不到字体文件本身，因此每个用到的字形从字体轮廓生成一次
+ * 字形过程（CharProc），按字体归入 Type 3 字体；每个子集最多 255 个字形，超出时另开一个子集。
+ * 字体附带 ToUnicode 映射，阅读器中的文字可以选择、复制和搜索。
+ * 字形在 1000 单位的字形空间中描述，FontMatrix 为 0.001。
+ */
+public class PdfFontSubsets {
+    private static final float UNITS_PER_EM = 1000f;
+    private static final int GLYPHS_PER_SUBSET = 255; // 编码 1~255，0 保留
+    private static final FontRenderContext OUTLINE_FRC = new FontRenderContext(null, true, true);
+
+    /**
+     * 一个字形在某个子集中的位置。
+     */
+    public static final class Glyph {
+        private final Subset subset;
+        private final int code;
+        private final float advance; // 字形空间单位
+
+        Glyph(Subset subset, int code, float advance) {
+            this.subset = subset;
+            this.code = code;
+            this.advance = advance;
+        }
+
+        public String getResourceName() {
+            return subset.resourceName;
+        }
+
+        public int getObjectId() {
+            return subset.objectId;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * 字号为 size 时的前进宽度。
+         */
+        public double getAdvance(double size) {
+            return advance * size / UNITS_PER_EM;
+        }
+    }
+
+    // 同一字体（不含字号）的所有子集
+    private static final class FontGlyphs {
+        final Font font; // 1000 号字
+        final Map<Integer, Glyph> glyphs = new HashMap<>();
+        Subset current;
+
+        FontGlyphs(Font font) {
+            this.font = font;
+        }
+    }
+
+    private static final class Subset {
+        final String resourceName;
+        final int objectId;
+        final List<byte[]> procs = new ArrayList<>();
+        final List<Float> widths = new ArrayList<>();
+        final List<String> unicode = new ArrayList<>();
+
+        Subset(String resourceName, int objectId) {
+            this.resourceName = resourceName;
+            this.objectId = objectId;
+        }
+    }
+
+    private final IntSupplier idAllocator;
+    private final Map<String, FontGlyphs> fonts = new HashMap<>();
+    private final List<Subset> subsets = new ArrayList<>();
+
+    /**
+     * @param idAllocator 分配 PDF 对象号，字体对象号在第一次用到时分配，以便页面资源字典立即引用
+     */
+    public PdfFontSubsets(IntSupplier idAllocator) {
+        this.idAllocator = idAllocator;
+    }
+
+    /**
+     * 取得字体中某个字形（GlyphVector 的字形码）对应的子集编码，chars 为它所表示的文字。
+     */
+    public Glyph glyph(Font font, int glyphCode, String chars) {
+        String key = font.getFontName() + '\u0000' + font.getStyle();
+        FontGlyphs entry = fonts.computeIfAbsent(key, k -> new FontGlyphs(font.deriveFont(UNITS_PER_EM)));
+        Glyph glyph = entry.glyphs.get(glyphCode);
+        if (glyph != null) {
+            return glyph;
+        }
+        Subset subset = entry.current;
+        if (subset == null || subset.procs.size() >= GLYPHS_PER_SUBSET) {
+            subset = new Subset("F" + subsets.size(), idAllocator.getAsInt());
+            subsets.add(subset);
+            entry.current = subset;
+        }
+        GlyphVector gv = entry.font.createGlyphVector(OUTLINE_FRC, new int[] { glyphCode });
+        float advance = gv.getGlyphMetrics(0).getAdvanceX();
+        subset.procs.add(charProc(gv.getGlyphOutline(0), advance));
+        subset.widths.add(advance);
+        subset.unicode.add(chars);
+        glyph = new Glyph(subset, subset.procs.size(), advance);
+        entry.glyphs.put(glyphCode, glyph);
+        return glyph;
+    }
+
+    // 字形过程：d1 声明只含形状（颜色取自调用处的填充色），轮廓由 y 向下翻转为字形空间的 y 向上
+    private static byte[] charProc(Shape outline, float advance) {
+        Shape flipped = AffineTransform.getScaleInstance(1, -1).createTransformedShape(outline);
+        Rectangle box = flipped.getBounds();
+        StringBuilder sb = new StringBuilder();
+        sb.append(PdfVectorRenderer.fmt(advance)).append(" 0 ").append(box.x).append(' ').append(box.y).append(' ')
+                .append(box.x + box.width).append(' ').append(box.y + box.height).append(" d1\n");
+        if (!box.isEmpty()) {
+            int winding = PdfVectorRenderer.appendPath(sb, flipped);
+            sb.append(winding == PathIterator.WIND_EVEN_ODD ? "f*\n" : "f\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 写出全部字体子集（所有页面写完之后调用）。
+     */
+    public void write(PdfWriter out) throws IOException {
+        for (Subset subset : subsets) {
+            int n = subset.procs.size();
+            StringBuilder charProcs = new StringBuilder("<< ");
+            StringBuilder differences = new StringBuilder("[1");
+            StringBuilder widths = new StringBuilder("[");
+            for (int code = 1; code <= n; code++) {
+                int procId = idAllocator.getAsInt();
+                out.flateStream(procId, "", subset.procs.get(code - 1));
+                charProcs.append("/g").append(code).append(' ').append(procId).append(" 0 R ");
+                differences.append(" /g").append(code);
+                widths.append(PdfVectorRenderer.fmt(subset.widths.get(code - 1))).append(' ');
+            }
+            charProcs.append(">>");
+            differences.append(']');
+            widths.append(']');
+
+            int toUnicodeId = idAllocator.getAsInt();
+            out.flateStream(toUnicodeId, "", toUnicode(subset));
+            out.object(subset.objectId, "<< /Type /Font /Subtype /Type3 /Name /" + subset.resourceName
+                    + " /FontBBox [0 0 0 0] /FontMatrix [0.001 0 0 0.001 0 0] /CharProcs " + charProcs
+                    + " /Encoding << /Type /Encoding /Differences " + differences + " >> /FirstChar 1 /LastChar " + n
+                    + " /Widths " + widths + " /Resources << >> /ToUnicode " + toUnicodeId + " 0 R >>");
+        }
+    }
+
+    // 编码到 UTF-16BE 文字的映射
+    private static byte[] toUnicode(Subset subset) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("/CIDInit /ProcSet findresource begin\n12 dict begin\nbegincmap\n")
+                .append("/CIDSystemInfo << /Registry (Adobe) /Ordering (UCS) /Supplement 0 >> def\n")
+                .append("/CMapName /Adobe-Identity-UCS def\n/CMapType 2 def\n")
+                .append("1 begincodespacerange\n<00> <FF>\nendcodespacerange\n");
+        List<String> entries = new ArrayList<>();
+        for (int code = 1; code <= subset.unicode.size(); code++) {
+            String chars = subset.unicode.get(code - 1);
+            if (chars.isEmpty()) {
+                continue;
+            }
+            StringBuilder hex = new StringBuilder();
+            for (char c : chars.toCharArray()) {
+                hex.append(String.format("%04X", (int) c));
+            }
+            entries.add(String.format("<%02X> <%s>", code, hex));
+        }
+        // 每个 bfchar 段最多 100 项
+        for (int i = 0; i < entries.size(); i += 100) {
+            List<String> chunk = entries.subList(i, Math.min(entries.size(), i + 100));
+            sb.append(chunk.size()).append(" beginbfchar\n");
+            for (String entry : chunk) {
+                sb.append(entry).append('\n');
+            }
+            sb.append("endbfchar\n");
+        }
+        sb.append("endcmap\nCMapName currentdict /CMap defineresource pop\nend\nend\n");
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
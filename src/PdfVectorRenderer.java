@@ -0,0 +1,486 @@
+// 文件名： PdfVectorRenderer.java
+// 功能： 把幻灯片页面转换为 PDF 内容流操作符（矢量输出）
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 将一页幻灯片转换为 PDF 内容流。图形、线条和文本框边框输出为路径；
+ * 文字以 PdfFontSubsets 生成的 Type 3 字体子集输出，放大后依然清晰且可以选择复制；
+ * 图片以图像 XObject 引用，由导出器按对象去重后写出。
+ * 富文本和未知类型的元素退回为高分辨率位图。
+ * 内容流先把坐标系翻转为左上角原点、y 轴向下，与 Java2D 一致。
+ */
+public class PdfVectorRenderer {
+    private static final int FALLBACK_RASTER_SCALE = 2; // 位图退回时的分辨率倍数
+    // 与栅格导出一致的测量上下文（开启抗锯齿、不使用小数度量），保证换行结果相同
+    private static final FontRenderContext TEXT_FRC = new FontRenderContext(null, true, false);
+    private static final Font MISSING_IMAGE_FONT = new Font(Font.DIALOG, Font.PLAIN, 12);
+
+    /**
+     * 一页的转换结果：内容流及其引用的资源。
+     */
+    public static final class Result {
+        private final byte[] content;
+        private final Map<String, BufferedImage> images;
+        private final Map<String, String> shadings;
+        private final Map<String, String> graphicsStates;
+        private final Set<String> temporaryImages;
+        private final Map<String, Integer> fonts;
+
+        Result(byte[] content, Map<String, BufferedImage> images, Map<String, String> shadings,
+                Map<String, String> graphicsStates, Set<String> temporaryImages, Map<String, Integer> fonts) {
+            this.content = content;
+            this.fonts = fonts;
+            this.images = images;
+            this.shadings = shadings;
+            this.graphicsStates = graphicsStates;
+            this.temporaryImages = temporaryImages;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        // 资源名 -> 图像，同一图像对象在一页内只出现一次
+        public Map<String, BufferedImage> getImages() {
+            return images;
+        }
+
+        // 退回为位图时临时生成的图像，不会在其他页面重复出现，无需参与去重
+        public boolean isTemporaryImage(String name) {
+            return temporaryImages.contains(name);
+        }
+
+        // 资源名 -> 直接写在资源字典中的 Shading 字典
+        public Map<String, String> getShadings() {
+            return shadings;
+        }
+
+        // 资源名 -> 直接写在资源字典中的 ExtGState 字典（透明度）
+        public Map<String, String> getGraphicsStates() {
+            return graphicsStates;
+        }
+
+        // 资源名 -> 字体子集对象号
+        public Map<String, Integer> getFonts() {
+            return fonts;
+        }
+    }
+
+    private final StringBuilder out = new StringBuilder(4096);
+    private final Map<BufferedImage, String> imageNames = new IdentityHashMap<>();
+    private final Map<String, BufferedImage> images = new LinkedHashMap<>();
+    private final Map<String, String> shadings = new LinkedHashMap<>();
+    private final Map<String, String> graphicsStates = new LinkedHashMap<>();
+    private final Set<String> temporaryImages = new HashSet<>();
+    private final Map<String, Integer> fontResources = new LinkedHashMap<>();
+    private final PdfFontSubsets fonts;
+
+    private PdfVectorRenderer(PdfFontSubsets fonts) {
+        this.fonts = fonts;
+    }
+
+    /**
+     * 转换一页。width/height 为幻灯片设计尺寸，即 PDF 页面的 MediaBox；fonts 为整个文档共用的字体子集。
+     */
+    public static Result render(SlidePage page, List<SlideElement> elements, int width, int height,
+            PdfFontSubsets fonts) {
+        PdfVectorRenderer renderer = new PdfVectorRenderer(fonts);
+        renderer.op("1 0 0 -1 0 ").num(height).op(" cm\n");
+        renderer.background(page, width, height);
+        for (SlideElement element : elements) {
+            renderer.element(element);
+        }
+        return new Result(renderer.out.toString().getBytes(StandardCharsets.US_ASCII), renderer.images,
+                renderer.shadings, renderer.graphicsStates, renderer.temporaryImages,
+                renderer.fontResources);
+    }
+
+    private void background(SlidePage page, int width, int height) {
+        BufferedImage backgroundImage = page.getBackgroundImage();
+        switch (page.getBackgroundMode()) {
+            case GRADIENT: {
+                String name = "Sh" + shadings.size();
+                shadings.put(name, "<< /ShadingType 2 /ColorSpace /DeviceRGB /Coords [0 0 0 " + fmt(height)
+                        + "] /Function << /FunctionType 2 /Domain [0 1] /C0 [" + rgb(page.getGradientStart())
+                        + "] /C1 [" + rgb(page.getGradientEnd()) + "] /N 1 >> /Extend [true true] >>");
+                op("q 0 0 ").num(width).op(" ").num(height).op(" re W n /").op(name).op(" sh Q\n");
+                return;
+            }
+            case IMAGE_STRETCH:
+                if (backgroundImage != null) {
+                    image(backgroundImage, 0, 0, width, height);
+                    return;
+                }
+                break;
+            case IMAGE_TILE:
+                if (backgroundImage != null) {
+                    int imgW = backgroundImage.getWidth();
+                    int imgH = backgroundImage.getHeight();
+                    op("q 0 0 ").num(width).op(" ").num(height).op(" re W n\n");
+                    for (int x = 0; x < width; x += imgW) {
+                        for (int y = 0; y < height; y += imgH) {
+                            image(backgroundImage, x, y, imgW, imgH);
+                        }
+                    }
+                    op("Q\n");
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        fillColor(page.getBackgroundColor());
+        op("0 0 ").num(width).op(" ").num(height).op(" re f\n");
+    }
+
+    private void element(SlideElement element) {
+        if (element instanceof RectangleElement || element instanceof OvalElement) {
+            shape((ShapeElement) element);
+        } else if (element instanceof LineElement line) {
+            line(line);
+        } else if (element instanceof TextElement text && text.getRichTextRtf() == null) {
+            text(text);
+        } else if (element instanceof ImageElement image) {
+            image(image);
+        } else {
+            rasterFallback(element);
+        }
+    }
+
+    private void shape(ShapeElement shape) {
+        Rectangle b = shape.getBounds();
+        op("q\n");
+        rotate(shape.getRotation(), b.x + b.width / 2.0, b.y + b.height / 2.0);
+        boolean oval = shape instanceof OvalElement;
+        if (shape.getFillColor() != null) {
+            fillColor(shape.getFillColor());
+            if (oval) {
+                path(new Ellipse2D.Double(b.x, b.y, b.width, b.height));
+                op("f\n");
+            } else {
+                rect(b).op(" re f\n");
+            }
+        }
+        if (shape.getBorderColor() != null && shape.getBorderThickness() > 0) {
+            stroke(shape.getBorderThickness(), BasicStroke.CAP_BUTT, shape.getBorderStyle());
+            strokeColor(shape.getBorderColor());
+            if (oval) {
+                path(new Ellipse2D.Double(b.x, b.y, b.width, b.height));
+                op("S\n");
+            } else {
+                rect(b).op(" re S\n");
+            }
+        }
+        op("Q\n");
+    }
+
+    private void line(LineElement line) {
+        Point start = line.getStartPoint();
+        Point end = line.getEndPoint();
+        op("q\n");
+        // 与 LineElement.draw 相同，以整数中点为旋转中心
+        rotate(line.getRotation(), (start.x + end.x) / 2, (start.y + end.y) / 2);
+        stroke(line.getThickness(), BasicStroke.CAP_SQUARE, null);
+        strokeColor(line.getColor());
+        num(start.x).op(" ").num(start.y).op(" m ").num(end.x).op(" ").num(end.y).op(" l S\nQ\n");
+    }
+
+    private void text(TextElement text) {
+        Rectangle b = text.getBounds();
+        op("q\n");
+        rotate(text.getRotation(), b.x + b.width / 2.0, b.y + b.height / 2.0);
+
+        TextLayoutEngine.Layout layout = text.getTextLayout(TEXT_FRC);
+        List<String> lines = layout.getLines();
+        op("q ").num(b.x).op(" ").num(b.y + TextElement.TOP_PADDING).op(" ").num(b.width).op(" ")
+                .num(b.height - TextElement.TOP_PADDING).op(" re W n\n");
+        fillColor(text.getColor());
+        int startY = b.y + TextElement.TOP_PADDING + layout.getAscent();
+        for (int i = 0; i < lines.size(); i++) {
+            int baseline = startY + i * layout.getLineHeight();
+            if (baseline - layout.getAscent() > b.y + b.height) {
+                break;
+            }
+            String lineText = lines.get(i);
+            if (lineText.isEmpty()) {
+                continue;
+            }
+            glyphs(text.getFont(), lineText, b.x + TextElement.TEXT_INSET_X, baseline);
+        }
+        op("Q\n");
+
+        if (text.getBorderThickness() > 0) {
+            // 与 TextElement.draw 一致：有虚线样式时用平头线帽，否则为 BasicStroke 的默认方头
+            float[] dash = text.getBorderStyle();
+            stroke(text.getBorderThickness(), dash != null ? BasicStroke.CAP_BUTT : BasicStroke.CAP_SQUARE, dash);
+            strokeColor(text.getBorderColor() != null ? text.getBorderColor() : text.getColor());
+            rect(b).op(" re S\n");
+        }
+        op("Q\n");
+    }
+
+    private void image(ImageElement element) {
+        Rectangle b = element.getBounds();
+        op("q\n");
+        rotate(element.getRotation(), b.x + b.width / 2.0, b.y + b.height / 2.0);
+        if (element.getImage() != null) {
+            image(element.getImage(), b.x, b.y, b.width, b.height);
+        } else {
+            stroke(1, BasicStroke.CAP_SQUARE, null);
+            strokeColor(Color.RED);
+            num(b.x).op(" ").num(b.y).op(" 100 100 re S\n");
+            fillColor(Color.RED);
+            glyphs(MISSING_IMAGE_FONT, "图片丢失", b.x + 10, b.y + 50);
+        }
+        op("Q\n");
+    }
+
+    // 把元素（含旋转）画到透明位图中，按旋转后的包围盒放置
+    private void rasterFallback(SlideElement element) {
+        Rectangle area = element.getRotatedBounds();
+        if (area.width <= 0 || area.height <= 0) {
+            return;
+        }
+        BufferedImage raster = new BufferedImage(area.width * FALLBACK_RASTER_SCALE,
+                area.height * FALLBACK_RASTER_SCALE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = raster.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.scale(FALLBACK_RASTER_SCALE, FALLBACK_RASTER_SCALE);
+        g2d.translate(-area.x, -area.y);
+        element.draw(g2d);
+        g2d.dispose();
+        temporaryImages.add(image(raster, area.x, area.y, area.width, area.height));
+    }
+
+    // 图像的单位正方形映射到 (x, y, w, h)；坐标系已翻转，所以 y 方向取负
+    private String image(BufferedImage image, double x, double y, double w, double h) {
+        String name = imageNames.get(image);
+        if (name == null) {
+            name = "Im" + imageNames.size();
+            imageNames.put(image, name);
+            images.put(name, image);
+        }
+        op("q ").num(w).op(" 0 0 ").num(-h).op(" ").num(x).op(" ").num(y + h).op(" cm /").op(name).op(" Do Q\n");
+        return name;
+    }
+
+    // 以字体子集输出一行文字。字形位置取自 GlyphVector，与前进宽度的差用 TJ 的位移数调整，
+    // 文本矩阵的 y 取负以抵消页面坐标的翻转
+    private void glyphs(Font font, String text, double x, double baseline) {
+        GlyphVector gv = font.createGlyphVector(TEXT_FRC, text);
+        double size = font.getSize2D();
+        String currentFont = null;
+        double penX = 0;
+        double penY = 0;
+        op("BT\n");
+        for (int i = 0; i < gv.getNumGlyphs(); i++) {
+            PdfFontSubsets.Glyph glyph = fonts.glyph(font, gv.getGlyphCode(i), glyphChars(gv, text, i));
+            Point2D pos = gv.getGlyphPosition(i);
+            if (!glyph.getResourceName().equals(currentFont) || pos.getY() != penY) {
+                if (currentFont != null) {
+                    op("] TJ\n");
+                }
+                currentFont = glyph.getResourceName();
+                fontResources.put(currentFont, glyph.getObjectId());
+                op("/").op(currentFont).op(" ").num(size).op(" Tf 1 0 0 -1 ").num(x + pos.getX()).op(" ")
+                        .num(baseline + pos.getY()).op(" Tm [");
+                penY = pos.getY();
+            } else {
+                double shift = (pos.getX() - penX) * 1000 / size;
+                if (Math.abs(shift) >= 0.001) {
+                    num(-shift);
+                }
+            }
+            op(String.format("<%02X>", glyph.getCode()));
+            penX = pos.getX() + glyph.getAdvance(size);
+        }
+        if (currentFont != null) {
+            op("] TJ\n");
+        }
+        op("ET\n");
+    }
+
+    // 第 i 个字形对应的原文字符，用于 ToUnicode
+    private static String glyphChars(GlyphVector gv, String text, int i) {
+        int start = gv.getGlyphCharIndex(i);
+        if (start < 0 || start >= text.length()) {
+            return "";
+        }
+        int end = start + Character.charCount(text.codePointAt(start));
+        if (i + 1 < gv.getNumGlyphs()) {
+            end = Math.max(end, Math.min(text.length(), gv.getGlyphCharIndex(i + 1)));
+        }
+        return text.substring(start, end);
+    }
+
+    private void rotate(double degrees, double cx, double cy) {
+        if (degrees == 0) {
+            return;
+        }
+        AffineTransform at = AffineTransform.getRotateInstance(Math.toRadians(degrees), cx, cy);
+        num(at.getScaleX()).op(" ").num(at.getShearY()).op(" ").num(at.getShearX()).op(" ").num(at.getScaleY())
+                .op(" ").num(at.getTranslateX()).op(" ").num(at.getTranslateY()).op(" cm\n");
+    }
+
+    private void stroke(int thickness, int cap, float[] dash) {
+        num(thickness).op(" w ");
+        op(cap == BasicStroke.CAP_BUTT ? "0" : cap == BasicStroke.CAP_ROUND ? "1" : "2").op(" J 0 j 10 M [");
+        if (dash != null) {
+            for (int i = 0; i < dash.length; i++) {
+                if (i > 0) {
+                    op(" ");
+                }
+                num(dash[i]);
+            }
+        }
+        op("] 0 d\n");
+    }
+
+    private void fillColor(Color color) {
+        alpha(color, "ca");
+        op(rgb(color)).op(" rg\n");
+    }
+
+    private void strokeColor(Color color) {
+        alpha(color, "CA");
+        op(rgb(color)).op(" RG\n");
+    }
+
+    // 半透明颜色通过 ExtGState 设置不透明度，只在当前 q/Q 内生效
+    private void alpha(Color color, String key) {
+        if (color.getAlpha() == 255) {
+            return;
+        }
+        String dict = "<< /" + key + " " + fmt(color.getAlpha() / 255.0) + " >>";
+        String name = null;
+        for (Map.Entry<String, String> e : graphicsStates.entrySet()) {
+            if (e.getValue().equals(dict)) {
+                name = e.getKey();
+                break;
+            }
+        }
+        if (name == null) {
+            name = "Gs" + graphicsStates.size();
+            graphicsStates.put(name, dict);
+        }
+        op("/").op(name).op(" gs\n");
+    }
+
+    // 输出路径，返回其填充规则
+    private int path(Shape shape) {
+        return appendPath(out, shape);
+    }
+
+    // 把路径追加为 PDF 路径操作符，字体子集的字形过程也使用
+    static int appendPath(StringBuilder out, Shape shape) {
+        PathIterator it = shape.getPathIterator(null);
+        double[] c = new double[6];
+        double lastX = 0;
+        double lastY = 0;
+        while (!it.isDone()) {
+            switch (it.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                    points(out, c[0], c[1]).append(" m\n");
+                    lastX = c[0];
+                    lastY = c[1];
+                    break;
+                case PathIterator.SEG_LINETO:
+                    points(out, c[0], c[1]).append(" l\n");
+                    lastX = c[0];
+                    lastY = c[1];
+                    break;
+                case PathIterator.SEG_QUADTO: {
+                    // 二次曲线升阶为三次曲线
+                    double c1x = lastX + 2.0 / 3.0 * (c[0] - lastX);
+                    double c1y = lastY + 2.0 / 3.0 * (c[1] - lastY);
+                    double c2x = c[2] + 2.0 / 3.0 * (c[0] - c[2]);
+                    double c2y = c[3] + 2.0 / 3.0 * (c[1] - c[3]);
+                    points(out, c1x, c1y, c2x, c2y, c[2], c[3]).append(" c\n");
+                    lastX = c[2];
+                    lastY = c[3];
+                    break;
+                }
+                case PathIterator.SEG_CUBICTO:
+                    points(out, c[0], c[1], c[2], c[3], c[4], c[5]).append(" c\n");
+                    lastX = c[4];
+                    lastY = c[5];
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    out.append("h\n");
+                    break;
+                default:
+                    break;
+            }
+            it.next();
+        }
+        return it.getWindingRule();
+    }
+
+    private static StringBuilder points(StringBuilder out, double... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.append(' ');
+            }
+            out.append(fmt(values[i]));
+        }
+        return out;
+    }
+
+    private PdfVectorRenderer rect(Rectangle r) {
+        return num(r.x).op(" ").num(r.y).op(" ").num(r.width).op(" ").num(r.height);
+    }
+
+    private PdfVectorRenderer op(String s) {
+        out.append(s);
+        return this;
+    }
+
+    private PdfVectorRenderer num(double v) {
+        out.append(fmt(v));
+        return this;
+    }
+
+    private static String rgb(Color color) {
+        return fmt(color.getRed() / 255.0) + " " + fmt(color.getGreen() / 255.0) + " " + fmt(color.getBlue() / 255.0);
+    }
+
+    // PDF 数字：整数直接输出，其余保留三位小数并去掉末尾的 0
+    static String fmt(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e9) {
+            return Long.toString((long) v);
+        }
+        String s = String.format(Locale.ROOT, "%.3f", v);
+        int end = s.length();
+        while (s.charAt(end - 1) == '0') {
+            end--;
+        }
+        if (s.charAt(end - 1) == '.') {
+            end--;
+        }
+        s = s.substring(0, end);
+        return s.equals("-0") ? "0" : s;
+    }
+}
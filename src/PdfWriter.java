@@ -0,0 +1,258 @@
+// 文件名： PdfWriter.java
+// 功能： PDF 对象的底层流式输出，记录对象位置并生成交叉引用
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * 流式写出 PDF 对象。输出经一块直接缓冲区批量写入 FileChannel，对象偏移取自通道位置加缓冲区位置；
+ * 对象写出后不再保留，内存占用与文档大小无关。对象号由 allocate 分配，对象可按任意顺序写出。
+ * <p>
+ * 压缩模式（PDF 1.5）下，非流对象先收进对象流（ObjStm），每满一批压缩写出一次，
+ * 结束时输出压缩的交叉引用流；否则输出 PDF 1.4 的文本交叉引用表。
+ */
+public class PdfWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int OBJECTS_PER_STREAM = 100;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final boolean compact;
+    private int nextId = 1;
+
+    // 下标为对象号。直接写出的对象记录文件偏移；对象流中的对象记录所在对象流的对象号和序号
+    private long[] offsets = new long[256];
+    private int[] containers = new int[256];
+
+    // 正在收集的对象流
+    private final List<Integer> pendingIds = new ArrayList<>();
+    private final StringBuilder pendingIndex = new StringBuilder();
+    private final StringBuilder pendingBodies = new StringBuilder();
+
+    /**
+     * @param compact 为 true 时使用对象流和交叉引用流（PDF 1.5）
+     */
+    public PdfWriter(FileChannel channel, boolean compact) throws IOException {
+        this.channel = channel;
+        this.compact = compact;
+        ascii(compact ? "%PDF-1.5\n" : "%PDF-1.4\n");
+        // 注释行中的高位字节提示传输工具按二进制处理
+        bytes(new byte[] { '%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n' });
+    }
+
+    public int allocate() {
+        int id = nextId++;
+        ensureCapacity(id);
+        return id;
+    }
+
+    /**
+     * 当前输出位置（已写入通道的字节数加缓冲区中未写出的字节数）。
+     */
+    public long position() throws IOException {
+        return channel.position() + buffer.position();
+    }
+
+    /**
+     * 写出非流对象。压缩模式下放入对象流，稍后与其他对象一起写出。
+     */
+    public void object(int id, CharSequence body) throws IOException {
+        if (!compact) {
+            begin(id);
+            ascii(Integer.toString(id));
+            ascii(" 0 obj\n");
+            ascii(body);
+            ascii("\nendobj\n");
+            return;
+        }
+        pendingIndex.append(id).append(' ').append(pendingBodies.length()).append(' ');
+        pendingBodies.append(body).append('\n');
+        pendingIds.add(id);
+        if (pendingIds.size() >= OBJECTS_PER_STREAM) {
+            flushObjectStream();
+        }
+    }
+
+    /**
+     * 写出流对象，dict 为字典中除 Length 以外的内容。流对象不能放入对象流，总是立即写出。
+     */
+    public void stream(int id, CharSequence dict, byte[] data) throws IOException {
+        begin(id);
+        ascii(Integer.toString(id));
+        ascii(" 0 obj\n<< ");
+        ascii(dict);
+        ascii(dict.length() == 0 ? "/Length " : " /Length ");
+        ascii(Integer.toString(data.length));
+        ascii(" >>\nstream\n");
+        bytes(data);
+        ascii("\nendstream\nendobj\n");
+    }
+
+    /**
+     * 以 FlateDecode 压缩后写出流对象，dict 中不应再含 Filter。
+     */
+    public void flateStream(int id, CharSequence dict, byte[] data) throws IOException {
+        stream(id, dict + (dict.length() == 0 ? "" : " ") + "/Filter /FlateDecode", deflate(data));
+    }
+
+    /**
+     * 写出剩余对象和交叉引用，并把缓冲区全部写入通道。之后不能再写对象。
+     */
+    public void finish(int rootId) throws IOException {
+        flushObjectStream();
+        if (compact) {
+            finishWithXrefStream(rootId);
+        } else {
+            finishWithXrefTable(rootId);
+        }
+        flush();
+    }
+
+    private void finishWithXrefTable(int rootId) throws IOException {
+        long xrefOffset = position();
+        int size = nextId;
+        StringBuilder xref = new StringBuilder(32 + size * 20);
+        xref.append("xref\n0 ").append(size).append('\n');
+        xref.append("0000000000 65535 f \n");
+        for (int id = 1; id < size; id++) {
+            if (offsets[id] == 0) {
+                xref.append("0000000000 65535 f \n");
+            } else {
+                xref.append(String.format("%010d", offsets[id])).append(" 00000 n \n");
+            }
+        }
+        xref.append("trailer\n<< /Size ").append(size).append(" /Root ").append(rootId)
+                .append(" 0 R >>\nstartxref\n").append(xrefOffset).append("\n%%EOF\n");
+        ascii(xref);
+    }
+
+    // 交叉引用流的每项为 [类型 字段2 字段3]：类型 1 为文件偏移，类型 2 为所在对象流及其中的序号
+    private void finishWithXrefStream(int rootId) throws IOException {
+        int xrefId = allocate();
+        long xrefOffset = position();
+        offsets[xrefId] = xrefOffset;
+        int size = nextId;
+
+        long maxField = xrefOffset;
+        for (int id = 1; id < size; id++) {
+            maxField = Math.max(maxField, containers[id] != 0 ? containers[id] : offsets[id]);
+        }
+        int fieldWidth = Math.max(1, (64 - Long.numberOfLeadingZeros(maxField) + 7) / 8);
+        int rowWidth = 1 + fieldWidth + 2;
+        byte[] table = new byte[size * rowWidth];
+        for (int id = 0; id < size; id++) {
+            int p = id * rowWidth;
+            long field2;
+            long field3;
+            if (containers[id] != 0) {
+                table[p] = 2;
+                field2 = containers[id];
+                field3 = offsets[id]; // 对象流中的序号
+            } else if (offsets[id] != 0) {
+                table[p] = 1;
+                field2 = offsets[id];
+                field3 = 0;
+            } else {
+                table[p] = 0;
+                field2 = 0;
+                field3 = id == 0 ? 65535 : 0;
+            }
+            for (int b = 0; b < fieldWidth; b++) {
+                table[p + fieldWidth - b] = (byte) (field2 >>> (8 * b));
+            }
+            table[p + fieldWidth + 1] = (byte) (field3 >>> 8);
+            table[p + fieldWidth + 2] = (byte) field3;
+        }
+        byte[] data = deflate(table);
+        ascii(xrefId + " 0 obj\n<< /Type /XRef /Size " + size + " /Root " + rootId + " 0 R /W [1 " + fieldWidth
+                + " 2] /Filter /FlateDecode /Length " + data.length + " >>\nstream\n");
+        bytes(data);
+        ascii("\nendstream\nendobj\nstartxref\n" + xrefOffset + "\n%%EOF\n");
+    }
+
+    private void flushObjectStream() throws IOException {
+        if (pendingIds.isEmpty()) {
+            return;
+        }
+        int streamId = allocate();
+        for (int i = 0; i < pendingIds.size(); i++) {
+            int id = pendingIds.get(i);
+            containers[id] = streamId;
+            offsets[id] = i;
+        }
+        byte[] index = pendingIndex.toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] bodies = pendingBodies.toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] data = Arrays.copyOf(index, index.length + bodies.length);
+        System.arraycopy(bodies, 0, data, index.length, bodies.length);
+        flateStream(streamId, "/Type /ObjStm /N " + pendingIds.size() + " /First " + index.length, data);
+        pendingIds.clear();
+        pendingIndex.setLength(0);
+        pendingBodies.setLength(0);
+    }
+
+    private void begin(int id) throws IOException {
+        ensureCapacity(id);
+        offsets[id] = position();
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= offsets.length) {
+            int length = Math.max(id + 1, offsets.length * 2);
+            offsets = Arrays.copyOf(offsets, length);
+            containers = Arrays.copyOf(containers, length);
+        }
+    }
+
+    // PDF 的语法部分只含 ASCII 字符，逐字符写入缓冲区，不生成中间字节数组
+    private void ascii(CharSequence s) throws IOException {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) s.charAt(i));
+        }
+    }
+
+    private void bytes(byte[] data) throws IOException {
+        int offset = 0;
+        while (offset < data.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(buffer.remaining(), data.length - offset);
+            buffer.put(data, offset, n);
+            offset += n;
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                bos.write(buffer, 0, n);
+            }
+            return bos.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
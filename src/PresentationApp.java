@@ -8,26 +8,22 @@ import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.Graphics2D;
-import java.awt.GraphicsEnvironment;
 import java.awt.GridLayout;
-import java.awt.RenderingHints;
+import java.awt.Rectangle;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import javax.imageio.ImageIO;
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 import javax.swing.ButtonGroup;
+import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JDialog;
@@ -62,12 +58,13 @@ public class PresentationApp extends JFrame {
     private JComboBox<String> fontComboBox; // 字体选择下拉框
 
     private JMenuBar menuBar;
-    private Set<String> availableFontSet = new HashSet<>(); // 可用字体集合，用于验证用户输入
     private String lastFontName; // 上次有效的字体名称，用于回退
     private JToolBar toolBar;
 
     private File currentFile = null; // 当前打开的文件路径
     private boolean isModified = false; // 标记文档是否已修改
+    private final transient AutosaveService autosave; // 有未保存的修改时定期写恢复文件
+    private final transient TaskRunner tasks; // 保存、打开、导出在后台运行
 
     public enum PageLayout // 页面布局枚举
     {
@@ -84,8 +81,21 @@ public class PresentationApp extends JFrame {
         return slide;
     }
 
+    private boolean updatingFonts; // 正在填充字体列表，忽略选择事件
+
     // 构造函数
     public PresentationApp() {
+        this(Startup.begin(new String[0]));
+    }
+
+    /**
+     * 在 EDT 上构建界面，同时 startup 在后台准备字体等资源；准备完成后才显示窗口。
+     */
+    public PresentationApp(Startup startup) {
+        long start = System.nanoTime();
+        // 两者都引用本窗口，在构造函数中创建而不是在字段初始化时
+        autosave = new AutosaveService(AutosaveService.defaultDirectory(), () -> isModified);
+        tasks = new TaskRunner(this);
         setTitle("PowerDot");
         setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE); // 自定义关闭操作，提示保存
         addWindowListener(new java.awt.event.WindowAdapter() {
@@ -118,21 +128,72 @@ public class PresentationApp extends JFrame {
         // 监听撤销管理器的状态变化，更新界面
         undoManager.addListener(() -> {
             isModified = true; // 标记为已修改
-            previewPanel.refreshPreviews();
-            editorPanel.repaint(); // 重绘画布
+            // 画布与缩略图通过页面修改事件各自局部刷新，不再整体重绘
         });
 
         createStatusBar();
-        setVisible(true);
         updatePageStatus();
+        startup.record("构建界面", start);
+
+        startup.whenReady(() -> finishStartup(startup));
+    }
+
+    // 启动准备完成：填入字体、打开命令行指定的文件、显示窗口，再询问是否恢复
+    private void finishStartup(Startup startup) {
+        installFontFamilies(startup.getFontFamilies().exceptionally(ex -> {
+            ex.printStackTrace();
+            return new String[0];
+        }).join());
+
+        File initialFile = startup.getInitialFile();
+        Exception openFailure = null;
+        try {
+            Slide opened = startup.getInitialSlide().join();
+            if (opened != null) {
+                showOpenedSlide(opened, initialFile);
+            }
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause() instanceof IllegalStateException state && state.getCause() != null
+                    ? state.getCause() : ex.getCause();
+            cause.printStackTrace();
+            openFailure = cause instanceof Exception failure ? failure : ex;
+        }
 
+        // 先找出上次异常退出留下的恢复文件，再取得自己的锁开始自动保存
+        List<AutosaveService.Recovery> recoveries = startup.getRecoveries().exceptionally(ex -> {
+            ex.printStackTrace();
+            return List.of();
+        }).join();
+        if (currentFile == null) {
+            autosave.setDocument(slide, null);
+        }
+        autosave.start();
+
+        setVisible(true);
+        if (openFailure != null) {
+            tasks.showError("无法打开 " + initialFile.getName() + ": " + openFailure.getMessage());
+        }
         // 延迟执行，确保界面已显示
         SwingUtilities.invokeLater(() -> {
             editorPanel.zoomToFit();
-            // 初始化字体选择框，确保在界面显示后设置默认值
+            offerRecovery(recoveries);
         });
     }
 
+    // 填入系统字体列表，默认选中第一个
+    private void installFontFamilies(String[] fontNames) {
+        updatingFonts = true;
+        try {
+            fontComboBox.setModel(new DefaultComboBoxModel<>(fontNames));
+            if (fontNames.length > 0) {
+                fontComboBox.setSelectedItem(fontNames[0]);
+                lastFontName = fontNames[0];
+            }
+        } finally {
+            updatingFonts = false;
+        }
+    }
+
     public void jumpToPage(int index) {
         if (index == slide.getCurrentPageIndex())
             return;
@@ -152,39 +213,33 @@ public class PresentationApp extends JFrame {
         JMenuItem newMenuItem = new JMenuItem("新建(N)");
         newMenuItem.setMnemonic(KeyEvent.VK_N);
         newMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_N, InputEvent.CTRL_DOWN_MASK));
-        newMenuItem.addActionListener(e-> {
-            if (!confirmSaveIfNeeded())
-                return;
-
+        newMenuItem.addActionListener(e-> confirmSaveIfNeeded(() -> {
+            this.slide.close();
             this.slide = new Slide();
             this.slide.addPage(new SlidePage());
             editorPanel.setSlide(this.slide);
             undoManager.clear();
             isModified = false;
             currentFile = null;
+            autosave.setDocument(this.slide, null);
 
             previewPanel.updateSlideList(slide.getAllPages());
             previewPanel.setSelectedPage(0);
 
             updatePageStatus();
-        });
+        }));
         JMenuItem openMenuItem = new JMenuItem("打开(O)...");
         openMenuItem.setMnemonic(KeyEvent.VK_O);
         openMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, InputEvent.CTRL_DOWN_MASK));
-        openMenuItem.addActionListener(e-> {
-            if (!confirmSaveIfNeeded())
-                return;
-            openSlide();
-            updatePageStatus();
-        });
+        openMenuItem.addActionListener(e-> confirmSaveIfNeeded(this::openSlide));
         JMenuItem saveMenuItem = new JMenuItem("保存(S)...");
         saveMenuItem.setMnemonic(KeyEvent.VK_S);
         saveMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, InputEvent.CTRL_DOWN_MASK));
-        saveMenuItem.addActionListener(e-> saveSlide());
+        saveMenuItem.addActionListener(e-> saveSlide(null));
 
         JMenuItem saveAsMenuItem = new JMenuItem("另存为(A)...");
         saveAsMenuItem.setMnemonic(KeyEvent.VK_A);
-        saveAsMenuItem.addActionListener(e-> saveSlideAs());
+        saveAsMenuItem.addActionListener(e-> saveSlideAs(null));
 
         JMenuItem pageSetupMenuItem = new JMenuItem("页面设置(P)...");
         pageSetupMenuItem.setMnemonic(KeyEvent.VK_P);
@@ -526,30 +581,20 @@ private void setNoBorder() {
         toolBar.add(colorButton);
         toolBar.addSeparator();
 
-        String[] fontNames = GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames();
-        // 将可用字体名称存入集合，用于验证用户输入
-        availableFontSet.clear();
-        for (String name : fontNames) {
-            availableFontSet.add(name.toLowerCase());
-        }
-        fontComboBox = new JComboBox<>(fontNames);
+        // 系统字体在后台枚举，完成后由 installFontFamilies 填入
+        fontComboBox = new JComboBox<>();
         fontComboBox.setToolTipText("选择字体");
         fontComboBox.setMaximumSize(new Dimension(200, 30));
         fontComboBox.setPreferredSize(new Dimension(200, 30));
         fontComboBox.setFocusable(false);
         fontComboBox.setEditable(true); // 允许用户输入自定义字体，如PPT
-        // 如果系统有可用字体，设置默认选中第一个
-        if (fontNames.length > 0) {
-            fontComboBox.setSelectedItem(fontNames[0]);
-            lastFontName = fontNames[0];
-        }
         fontComboBox.addActionListener(e-> {
             String selectedFontName = (String) fontComboBox.getSelectedItem();
-            if (selectedFontName != null) {
+            if (selectedFontName != null && !updatingFonts) {
                 String trimmed = selectedFontName.trim();
                 if (trimmed.isEmpty())
                     return;
-                if (availableFontSet.contains(trimmed.toLowerCase())) {
+                if (FontCatalog.isAvailable(trimmed)) {
                     lastFontName = trimmed;
                     applyFontChange(trimmed, -1, -1);
                 } else {
@@ -707,7 +752,7 @@ private void setNoBorder() {
             }
             int size = (newSize != -1) ? newSize : oldFont.getSize();
 
-            Font newFont = new Font(fontName, style, size);
+            Font newFont = FontCatalog.getFont(fontName, style, size);
 
             Command cmd = new ChangeElementPropertyCommand(
                     () -> textElem.setFont(newFont),
@@ -774,6 +819,7 @@ private void setNoBorder() {
         });
         zoomPanel.add(zoomComboBox);
         statusBar.add(zoomPanel, BorderLayout.EAST);
+        statusBar.add(tasks.getComponent(), BorderLayout.WEST);
 
         add(statusBar, BorderLayout.SOUTH);
     }
@@ -800,31 +846,70 @@ private void setNoBorder() {
         fileChooser.setDialogTitle("选择要插入的图片");
         fileChooser.setFileFilter(new FileNameExtensionFilter("图像文件", "png", "jpg", "jpeg", "gif"));
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            SlidePage page = editorPanel.getCurrentPage();
+            if (page == null) {
+                return;
+            }
+            Dimension size;
             try {
-                BufferedImage image = ImageIO.read(fileChooser.getSelectedFile());
-                if (image != null) {
-                    ImageElement newImage = new ImageElement(100, 100, image);
-                    Command cmd = new AddElementCommand(editorPanel.getCurrentPage(), newImage);
-                    undoManager.executeCommand(cmd);
-                    editorPanel.repaint();
-                } else {
-                    JOptionPane.showMessageDialog(this, "无法读取图像文件。", "错误", JOptionPane.ERROR_MESSAGE);
-                }
+                size = ImageImporter.readSize(file); // 只读文件头，立即可以放置占位元素
             } catch (IOException ex) {
                 JOptionPane.showMessageDialog(this, "读取图像文件失败: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                return;
             }
+            // 解码期间页面上显示占位元素；完成后填入图片，作为一次可撤销的插入
+            ImageElement element = ImageElement.placeholder(placeImage(size));
+            page.addElement(element);
+            editorPanel.repaint();
+            importImage(file, "导入图片", image -> {
+                page.removeElement(element);
+                element.setImage(slide.getImageStore().intern(image));
+                undoManager.executeCommand(new AddElementCommand(page, element));
+                editorPanel.repaint();
+            }, () -> {
+                if (element.isLoading()) {
+                    page.removeElement(element); // 失败或取消
+                    editorPanel.repaint();
+                }
+            });
         }
     }
 
-    private boolean saveSlide() {
+    /**
+     * 在后台读取图片文件，按幻灯片尺寸降采样（见 ImageImporter），成功后在 EDT 上以图片调用 onLoaded。
+     * onFinish 可以为 null，否则在结束时（包括失败和取消）调用。
+     */
+    public void importImage(File file, String title, Consumer<BufferedImage> onLoaded, Runnable onFinish) {
+        int maxWidth = ImageImporter.maxWidth(slide);
+        int maxHeight = ImageImporter.maxHeight(slide);
+        tasks.run(title, progress -> ImageImporter.read(file, maxWidth, maxHeight, progress), onLoaded,
+                ex -> tasks.showError(title + "失败: " + ex.getMessage()), onFinish);
+    }
+
+    // 插入图片的位置和显示尺寸：原始大小放在 (100, 100)，比幻灯片大时缩小到幻灯片的八成并居中
+    private Rectangle placeImage(Dimension size) {
+        int slideWidth = slide.getWidth();
+        int slideHeight = slide.getHeight();
+        if (size.width <= slideWidth && size.height <= slideHeight) {
+            return new Rectangle(100, 100, size.width, size.height);
+        }
+        double scale = 0.8 * Math.min((double) slideWidth / size.width, (double) slideHeight / size.height);
+        int width = Math.max(1, (int) Math.round(size.width * scale));
+        int height = Math.max(1, (int) Math.round(size.height * scale));
+        return new Rectangle((slideWidth - width) / 2, (slideHeight - height) / 2, width, height);
+    }
+
+    // 保存完成后执行 then（可以为 null）；保存失败或取消时不执行
+    private void saveSlide(Runnable then) {
         if (currentFile != null) {
-            return saveToFile(currentFile);
+            saveToFile(currentFile, then);
         } else {
-            return saveSlideAs();
+            saveSlideAs(then);
         }
     }
 
-    private boolean saveSlideAs() {
+    private void saveSlideAs(Runnable then) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("保存幻灯片");
         fileChooser.setFileFilter(new FileNameExtensionFilter("幻灯片文件(*.slide)", "slide"));
@@ -833,23 +918,25 @@ private void setNoBorder() {
             if (!fileToSave.getName().toLowerCase().endsWith(".slide")) {
                 fileToSave = new File(fileToSave.getParentFile(), fileToSave.getName() + ".slide");
             }
-            currentFile = fileToSave;
-            return saveToFile(currentFile);
+            saveToFile(fileToSave, then);
         }
-        return false;
     }
 
-    private boolean saveToFile(File file) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            oos.writeObject(slide);
+    // 在后台保存，期间编辑器只读
+    private void saveToFile(File file, Runnable then) {
+        Slide target = slide;
+        tasks.run("保存", progress -> {
+            SlideFile.write(target, file, progress);
+            return null;
+        }, result -> {
+            currentFile = file;
             isModified = false;
-            JOptionPane.showMessageDialog(this, "保存成功。");
-            return true;
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "保存失败: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-            return false;
-        }
+            autosave.setFile(file);
+            tasks.showMessage("已保存到 " + file.getName());
+            if (then != null) {
+                then.run();
+            }
+        });
     }
 
     private void openSlide() {
@@ -858,32 +945,37 @@ private void setNoBorder() {
         fileChooser.setFileFilter(new FileNameExtensionFilter("幻灯片文件(*.slide)", "slide"));
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File fileToOpen = fileChooser.getSelectedFile();
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(fileToOpen))) {
-                slide = (Slide) ois.readObject();
-                editorPanel.setSlide(slide);
-                undoManager.clear();
-                isModified = false;
-
-                currentFile = fileToOpen;
-
-                // 更新预览面板
-                previewPanel.updateSlideList(slide.getAllPages());
-                previewPanel.setSelectedPage(slide.getCurrentPageIndex());
-
-                currentFile = fileToOpen; // 更新当前文件引用
-
-                JOptionPane.showMessageDialog(this, "打开成功。");
-            } catch (java.io.InvalidClassException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "文件版本不兼容，可能由不同版本的PowerDot创建。" + ex.getMessage(), "版本错误",
-                        JOptionPane.ERROR_MESSAGE);
-            } catch (IOException | ClassNotFoundException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "打开失败: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-            }
+            // 只读取页面目录，页面和图片在显示时才从文件中读取；旧的序列化格式文件同样可以打开
+            tasks.run("打开", progress -> SlideFile.open(fileToOpen, progress), opened -> {
+                showOpenedSlide(opened, fileToOpen);
+                tasks.showMessage("已打开 " + fileToOpen.getName());
+            }, ex -> {
+                if (ex instanceof java.io.InvalidClassException) {
+                    tasks.showError("文件版本不兼容，可能由不同版本的PowerDot创建。" + ex.getMessage());
+                } else {
+                    tasks.showError("打开失败: " + ex.getMessage());
+                }
+            });
         }
     }
 
+    // 以打开的文件替换当前幻灯片
+    private void showOpenedSlide(Slide opened, File file) {
+        slide.close();
+        slide = opened;
+        editorPanel.setSlide(slide);
+        undoManager.clear();
+        isModified = false;
+        autosave.setDocument(slide, file);
+
+        currentFile = file; // 更新当前文件引用
+
+        // 更新预览面板
+        previewPanel.updateSlideList(slide.getAllPages());
+        previewPanel.setSelectedPage(slide.getCurrentPageIndex());
+        updatePageStatus();
+    }
+
     private void exportCurrentPageAsImage() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("导出当前页为PNG图片");
@@ -893,37 +985,29 @@ private void setNoBorder() {
             if (!fileToSave.getName().toLowerCase().endsWith(".png")) {
                 fileToSave = new File(fileToSave.getParentFile(), fileToSave.getName() + ".png");
             }
-            try {
-                int width = slide.getWidth();
-                int height = slide.getHeight();
-                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-                Graphics2D g2d = image.createGraphics();
-
-                // 设置抗锯齿
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-
-                SlidePage currentPage = slide.getCurrentPage();
+            File target = fileToSave;
+            int width = slide.getWidth();
+            int height = slide.getHeight();
+            SlidePage currentPage = slide.getCurrentPage();
+            // 渲染和 PNG 编码都在后台进行
+            tasks.run("导出图片", progress -> {
+                BufferedImage image;
                 if (currentPage != null) {
-                    // 绘制页面背景
-                    currentPage.renderBackground(g2d, width, height);
-
-                    // 绘制页面元素
-                    for (SlideElement element : currentPage.getElements()) {
-                        element.draw(g2d);
-                    }
+                    image = PageRenderer.render(currentPage, width, height, width, height,
+                            BufferedImage.TYPE_INT_ARGB);
                 } else {
+                    image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D g2d = image.createGraphics();
                     g2d.setColor(Color.WHITE);
                     g2d.fillRect(0, 0, width, height);
+                    g2d.dispose();
                 }
-
-                g2d.dispose();
-                ImageIO.write(image, "png", fileToSave);
-                JOptionPane.showMessageDialog(this, "导出成功。");
-            } catch (IOException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "导出失败: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-            }
+                progress.progress(1, 2);
+                progress.checkCancelled();
+                ImageIO.write(image, "png", target);
+                progress.progress(2, 2);
+                return null;
+            }, result -> tasks.showMessage("已导出 " + target.getName()));
         }
     }
 
@@ -936,16 +1020,36 @@ private void setNoBorder() {
             if (!fileToSave.getName().toLowerCase().endsWith(".pdf")) {
                 fileToSave = new File(fileToSave.getParentFile(), fileToSave.getName() + ".pdf");
             }
-            try {
-                SimplePdfExporter.export(slide, fileToSave);
-                JOptionPane.showMessageDialog(this, "导出成功。");
-            } catch (IOException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "导出失败: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+            Object[] options = { "矢量（文字清晰、文件小）", "图片（与屏幕显示完全一致）" };
+            int choice = JOptionPane.showOptionDialog(this, "请选择导出方式：", "导出为PDF", JOptionPane.DEFAULT_OPTION,
+                    JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+            if (choice == JOptionPane.CLOSED_OPTION) {
+                return;
             }
+            SimplePdfExporter.Mode mode = choice == 0 ? SimplePdfExporter.Mode.VECTOR : SimplePdfExporter.Mode.RASTER;
+            exportToPDFInBackground(fileToSave, mode);
         }
     }
 
+    // 在后台导出 PDF，按页显示进度，可取消（取消后删除未写完的文件）
+    private void exportToPDFInBackground(File fileToSave, SimplePdfExporter.Mode mode) {
+        Slide target = slide;
+        tasks.run("导出为PDF", progress -> {
+            SimplePdfExporter.export(target, fileToSave, mode, new SimplePdfExporter.Progress() {
+                @Override
+                public void pagesWritten(int done, int total) {
+                    progress.progress(done, total);
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return progress.isCancelled();
+                }
+            });
+            return null;
+        }, result -> tasks.showMessage("已导出 " + fileToSave.getName()));
+    }
+
     private void playSlideshow(int startIndex) {
         if (slide.getAllPages().isEmpty()) {
             JOptionPane.showMessageDialog(this, "没有可播放的幻灯片页面。");
@@ -1095,13 +1199,24 @@ private void setNoBorder() {
             currentPage.setBackgroundColor(dialog.getSolidColor());
             currentPage.setGradientStart(dialog.getGradientStart());
             currentPage.setGradientEnd(dialog.getGradientEnd());
-            currentPage.setBackgroundImage(dialog.getSelectedImage());
-            editorPanel.repaint();
-            previewPanel.updateSlideList(slide.getAllPages());
-            previewPanel.setSelectedPage(slide.getCurrentPageIndex());
+            refreshPageBackground();
+            File imageFile = dialog.getSelectedFile();
+            if (imageFile != null) {
+                // 新选的图片和插入图片一样在后台解码，可以取消
+                importImage(imageFile, "加载背景图片", image -> {
+                    currentPage.setBackgroundImage(slide.getImageStore().intern(image));
+                    refreshPageBackground();
+                }, null);
+            }
         }
     }
 
+    private void refreshPageBackground() {
+        editorPanel.repaint();
+        previewPanel.updateSlideList(slide.getAllPages());
+        previewPanel.setSelectedPage(slide.getCurrentPageIndex());
+    }
+
     private void applyLayout(PageLayout layout) {
         SlidePage currentPage = editorPanel.getCurrentPage();
         if (currentPage == null)
@@ -1156,25 +1271,26 @@ private void setNoBorder() {
         }
     }
 
-    private boolean confirmSaveIfNeeded() {
+    // 文档有修改时询问是否保存，保存完成（或选择不保存）后执行 proceed，选择取消则不执行
+    private void confirmSaveIfNeeded(Runnable proceed) {
         if (!isModified) {
-            return true;
+            proceed.run();
+            return;
         }
         int result = JOptionPane.showConfirmDialog(this, "当前文档已修改，是否保存？", "保存确认", JOptionPane.YES_NO_CANCEL_OPTION);
         if (result == JOptionPane.YES_OPTION) {
-            return saveSlide();
+            saveSlide(proceed);
         } else if (result == JOptionPane.NO_OPTION) {
-            return true; // Proceed without saving
-        } else {
-            return false; // Cancel
+            proceed.run(); // Proceed without saving
         }
     }
 
     private void showTutorial() {
-        if (!confirmSaveIfNeeded()) {
-            return;
-        }
+        confirmSaveIfNeeded(this::loadTutorial);
+    }
 
+    private void loadTutorial() {
+        slide.close();
         slide = new Slide();
 
         // Page 1: Welcome
@@ -1237,22 +1353,71 @@ private void setNoBorder() {
         undoManager.clear();
         isModified = false;
         currentFile = null;
+        autosave.setDocument(slide, null);
 
         previewPanel.updateSlideList(slide.getAllPages());
         previewPanel.setSelectedPage(0);
         updatePageStatus();
     }
 
+    // 启动时逐个询问是否恢复上次未保存的内容；恢复一个后其余的留到下次启动再提示
+    private void offerRecovery(List<AutosaveService.Recovery> recoveries) {
+        boolean recovered = false;
+        for (AutosaveService.Recovery recovery : recoveries) {
+            if (recovered) {
+                recovery.release();
+                continue;
+            }
+            File original = recovery.getOriginalFile();
+            String name = original != null ? original.getName() : "未命名幻灯片";
+            String time = java.text.DateFormat.getDateTimeInstance().format(new java.util.Date(recovery.getSavedTime()));
+            int result = JOptionPane.showConfirmDialog(this,
+                    "上次 PowerDot 没有正常退出。发现“" + name + "”未保存的内容（自动保存于 " + time + "），是否恢复？",
+                    "恢复", JOptionPane.YES_NO_CANCEL_OPTION);
+            if (result == JOptionPane.YES_OPTION) {
+                try {
+                    Slide restored = autosave.recover(recovery);
+                    slide.close();
+                    slide = restored;
+                    editorPanel.setSlide(slide);
+                    undoManager.clear();
+                    isModified = true; // 恢复的内容仍需保存
+                    currentFile = original;
+                    previewPanel.updateSlideList(slide.getAllPages());
+                    previewPanel.setSelectedPage(slide.getCurrentPageIndex());
+                    updatePageStatus();
+                    recovered = true;
+                } catch (IOException | ClassNotFoundException ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(this, "恢复失败: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                    recovery.release();
+                }
+            } else if (result == JOptionPane.NO_OPTION) {
+                recovery.discard();
+            } else {
+                recovery.release(); // 下次启动时再提示
+            }
+        }
+    }
+
     private void exitApp() {
-        if (confirmSaveIfNeeded()) {
-            System.exit(0);
+        if (tasks.isBusy()) {
+            tasks.showMessage("请等待当前操作完成或取消后再退出");
+            return;
         }
+        confirmSaveIfNeeded(() -> {
+            autosave.shutdown();
+            System.exit(0);
+        });
     }
 
     public static void main(String[] args) {
-        SplashScreen splash = new SplashScreen(500);
-        splash.showSplash();
-        SwingUtilities.invokeLater(PresentationApp::new);
+        // 后台准备工作先开始，EDT 显示启动画面后构建界面，两者并行；准备完成时才显示主窗口
+        Startup startup = Startup.begin(args);
+        SwingUtilities.invokeLater(() -> {
+            startup.showSplash();
+            new PresentationApp(startup);
+        });
     }
 }
 
@@ -1261,7 +1426,6 @@ class PageBackgroundDialog extends JDialog {
     private Color solidColor;
     private Color gradientStart;
     private Color gradientEnd;
-    private BufferedImage selectedImage;
     private boolean confirmed = false;
 
     private final JComboBox<SlidePage.BackgroundMode> modeCombo;
@@ -1270,6 +1434,7 @@ class PageBackgroundDialog extends JDialog {
     private final JButton gradEndButton;
     private final JButton imageButton;
     private final JLabel imageLabel;
+    private File selectedFile; // 新选的图片文件，确定后由主窗口在后台读取
 
     public PageBackgroundDialog(JFrame owner, SlidePage page) {
         super(owner, "页面背景", true);
@@ -1277,7 +1442,6 @@ class PageBackgroundDialog extends JDialog {
         this.solidColor = page.getBackgroundColor();
         this.gradientStart = page.getGradientStart();
         this.gradientEnd = page.getGradientEnd();
-        this.selectedImage = page.getBackgroundImage();
         JPanel root = new JPanel(new BorderLayout(10, 10));
         root.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
@@ -1318,23 +1482,13 @@ class PageBackgroundDialog extends JDialog {
         gradEndButton.setBackground(gradientEnd);
 
         imageButton = new JButton("选择图片");
-        imageLabel = new JLabel(selectedImage != null ? "已选图片" : "未选择");
+        imageLabel = new JLabel(page.getBackgroundImage() != null ? "已选图片" : "未选择");
         imageButton.addActionListener(e -> {
             JFileChooser chooser = new JFileChooser();
             int result = chooser.showOpenDialog(this);
             if (result == JFileChooser.APPROVE_OPTION) {
-                File file = chooser.getSelectedFile();
-                try {
-                    BufferedImage img = ImageIO.read(file);
-                    if (img != null) {
-                        selectedImage = img;
-                        imageLabel.setText(file.getName());
-                    } else {
-                        JOptionPane.showMessageDialog(this, "无法读取图片文件。");
-                    }
-                } catch (IOException ex) {
-                    JOptionPane.showMessageDialog(this, "读取图片失败: " + ex.getMessage());
-                }
+                selectedFile = chooser.getSelectedFile();
+                imageLabel.setText(selectedFile.getName());
             }
         });
 
@@ -1387,7 +1541,7 @@ class PageBackgroundDialog extends JDialog {
     public Color getSolidColor() { return solidColor; }
     public Color getGradientStart() { return gradientStart; }
     public Color getGradientEnd() { return gradientEnd; }
-    public BufferedImage getSelectedImage() { return selectedImage; }
+    public File getSelectedFile() { return selectedFile; }
 }
 
 class ThemeChooserDialog extends JDialog {
@@ -1,6 +1,8 @@
 import java.awt.*;
 
 public class RectangleElement extends ShapeElement {
+    private static final long serialVersionUID = 5191904909005736721L;
+
     // MODIFIED: Constructor signature updated
     public RectangleElement(int x, int y, int width, int height, Color borderColor, Color fillColor,
             int borderThickness) {
@@ -22,8 +24,7 @@ public class RectangleElement extends ShapeElement {
 
         if (borderColor != null && borderThickness > 0) {
             // MODIFIED: Set the stroke before drawing the border
-            g2d.setStroke(new BasicStroke(borderThickness, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f,
-                    dashArray, 0.0f));
+            g2d.setStroke(getBorderStroke());
             g2d.setColor(borderColor);
             g2d.drawRect(x, y, width, height);
         }
@@ -6,7 +6,7 @@ public class RemoveElementCommand implements Command {
     public RemoveElementCommand(SlidePage page, SlideElement element) {
         this.page = page;
         this.element = element;
-        this.index = page.getElements().indexOf(element);
+        this.index = page.indexOf(element);
     }
 
     @Override
@@ -0,0 +1,273 @@
+// 文件名： RichTextRenderer.java
+// 功能： 富文本（RTF）文本框的绘制，解析结果与排版结果按元素缓存
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+import javax.swing.text.rtf.RTFEditorKit;
+
+/**
+ * 一个富文本文本框的渲染器。RTF 只在创建时解析一次，之后按模式绘制：
+ * <ul>
+ * <li>DISPLAY_LIST：把文档预排版成 TextLayout 列表，绘制时直接输出字形，不经过 Swing 组件，可在后台线程使用；</li>
+ * <li>TEXT_PANE：复用同一个 JTextPane，尺寸和默认样式变化时才重新布局，外观与编辑时完全一致，只能在 EDT 使用。</li>
+ * </ul>
+ * 由 TextElement 持有，RTF 源文本变化时整个渲染器被丢弃重建。
+ */
+public class RichTextRenderer {
+    public enum Mode {
+        DISPLAY_LIST, TEXT_PANE
+    }
+
+    private static volatile Mode mode = Mode.DISPLAY_LIST;
+    private static final float PADDING = 3f; // 与 JTextPane 默认边距一致
+
+    private final StyledDocument document;
+
+    // TEXT_PANE 模式
+    private JTextPane pane;
+    private Font paneFont;
+    private Color paneColor;
+
+    // DISPLAY_LIST 模式
+    private volatile DisplayList displayList;
+
+    public RichTextRenderer(String rtf, String fallbackText) {
+        this.document = parse(rtf, fallbackText);
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    public static void setMode(Mode newMode) {
+        mode = newMode;
+    }
+
+    public StyledDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * 在 (x, y, width, height) 区域内绘制文档，defaultFont/defaultColor 用于未指定样式的文字。
+     */
+    public void paint(Graphics2D g2d, int x, int y, int width, int height, Font defaultFont, Color defaultColor) {
+        // JTextPane 只能在 EDT 上使用，后台渲染（缩略图等）总是走显示列表
+        if (mode == Mode.TEXT_PANE && SwingUtilities.isEventDispatchThread()) {
+            paintWithPane(g2d, x, y, width, height, defaultFont, defaultColor);
+        } else {
+            paintDisplayList(g2d, x, y, width, height, defaultFont, defaultColor);
+        }
+    }
+
+    private void paintWithPane(Graphics2D g2d, int x, int y, int width, int height, Font defaultFont,
+            Color defaultColor) {
+        if (pane == null) {
+            pane = new JTextPane();
+            pane.setEditable(false);
+            pane.setOpaque(false);
+            pane.setDocument(document);
+        }
+        if (!defaultFont.equals(paneFont)) {
+            pane.setFont(defaultFont);
+            paneFont = defaultFont;
+        }
+        if (!defaultColor.equals(paneColor)) {
+            pane.setForeground(defaultColor);
+            paneColor = defaultColor;
+        }
+        if (pane.getWidth() != width || pane.getHeight() != height) {
+            pane.setSize(width, height);
+        }
+        Graphics2D g = (Graphics2D) g2d.create();
+        g.translate(x, y);
+        pane.printAll(g);
+        g.dispose();
+    }
+
+    private void paintDisplayList(Graphics2D g2d, int x, int y, int width, int height, Font defaultFont,
+            Color defaultColor) {
+        FontRenderContext frc = TextLayoutEngine.measuringContext(g2d.getFontRenderContext());
+        DisplayList list = displayList;
+        if (list == null || !list.matches(width, defaultFont, defaultColor, frc)) {
+            list = buildDisplayList(width, defaultFont, defaultColor, frc);
+            displayList = list;
+        }
+        Shape oldClip = g2d.getClip();
+        g2d.clipRect(x, y, width, height);
+        for (Run run : list.runs) {
+            if (run.top > height) {
+                break;
+            }
+            run.layout.draw(g2d, x + run.x, y + run.baseline);
+        }
+        g2d.setClip(oldClip);
+    }
+
+    // 把每个段落转换为带样式的 AttributedString，再用 LineBreakMeasurer 按宽度折行
+    private DisplayList buildDisplayList(int width, Font defaultFont, Color defaultColor, FontRenderContext frc) {
+        List<Run> runs = new ArrayList<>();
+        float wrapWidth = Math.max(1f, width - 2 * PADDING);
+        float[] cursorY = { PADDING };
+        Runnable build = () -> {
+            Element root = document.getDefaultRootElement();
+            for (int p = 0; p < root.getElementCount(); p++) {
+                Element paragraph = root.getElement(p);
+                AttributedString styled = toAttributedString(paragraph, defaultFont, defaultColor);
+                int alignment = StyleConstants.getAlignment(paragraph.getAttributes());
+                if (styled == null) {
+                    // 空段落只占一行高度
+                    TextLayout blank = new TextLayout(" ", defaultFont, frc);
+                    cursorY[0] += blank.getAscent() + blank.getDescent() + blank.getLeading();
+                    continue;
+                }
+                AttributedCharacterIterator it = styled.getIterator();
+                LineBreakMeasurer measurer = new LineBreakMeasurer(it, frc);
+                while (measurer.getPosition() < it.getEndIndex()) {
+                    TextLayout line = measurer.nextLayout(wrapWidth);
+                    float top = cursorY[0];
+                    float baseline = top + line.getAscent();
+                    float lineX = PADDING;
+                    float advance = line.getVisibleAdvance();
+                    if (alignment == StyleConstants.ALIGN_CENTER) {
+                        lineX += (wrapWidth - advance) / 2f;
+                    } else if (alignment == StyleConstants.ALIGN_RIGHT) {
+                        lineX += wrapWidth - advance;
+                    }
+                    runs.add(new Run(line, lineX, baseline, top));
+                    cursorY[0] = baseline + line.getDescent() + line.getLeading();
+                }
+            }
+        };
+        if (document instanceof AbstractDocument abstractDocument) {
+            abstractDocument.render(build); // 持读锁遍历文档
+        } else {
+            build.run();
+        }
+        return new DisplayList(width, defaultFont, defaultColor, frc, runs);
+    }
+
+    // 段落文字为空时返回 null
+    private AttributedString toAttributedString(Element paragraph, Font defaultFont, Color defaultColor) {
+        int start = paragraph.getStartOffset();
+        int end = Math.min(paragraph.getEndOffset(), document.getLength());
+        String text;
+        try {
+            text = document.getText(start, end - start);
+        } catch (BadLocationException e) {
+            return null;
+        }
+        if (text.endsWith("\n")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        if (text.isEmpty()) {
+            return null;
+        }
+        AttributedString styled = new AttributedString(text);
+        for (int i = 0; i < paragraph.getElementCount(); i++) {
+            Element run = paragraph.getElement(i);
+            int runStart = Math.max(run.getStartOffset(), start) - start;
+            int runEnd = Math.min(run.getEndOffset(), start + text.length()) - start;
+            if (runStart >= runEnd) {
+                continue;
+            }
+            AttributeSet attrs = run.getAttributes();
+            Object family = attrs.getAttribute(StyleConstants.FontFamily);
+            Object size = attrs.getAttribute(StyleConstants.FontSize);
+            Object foreground = attrs.getAttribute(StyleConstants.Foreground);
+            boolean bold = attrs.getAttribute(StyleConstants.Bold) != null ? StyleConstants.isBold(attrs)
+                    : defaultFont.isBold();
+            boolean italic = attrs.getAttribute(StyleConstants.Italic) != null ? StyleConstants.isItalic(attrs)
+                    : defaultFont.isItalic();
+
+            styled.addAttribute(TextAttribute.FAMILY, family != null ? family : defaultFont.getFamily(), runStart,
+                    runEnd);
+            styled.addAttribute(TextAttribute.SIZE,
+                    size instanceof Number n ? n.floatValue() : defaultFont.getSize2D(), runStart, runEnd);
+            styled.addAttribute(TextAttribute.WEIGHT, bold ? TextAttribute.WEIGHT_BOLD : TextAttribute.WEIGHT_REGULAR,
+                    runStart, runEnd);
+            styled.addAttribute(TextAttribute.POSTURE,
+                    italic ? TextAttribute.POSTURE_OBLIQUE : TextAttribute.POSTURE_REGULAR, runStart, runEnd);
+            styled.addAttribute(TextAttribute.FOREGROUND, foreground != null ? foreground : defaultColor, runStart,
+                    runEnd);
+            if (StyleConstants.isUnderline(attrs)) {
+                styled.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON, runStart, runEnd);
+            }
+            if (StyleConstants.isStrikeThrough(attrs)) {
+                styled.addAttribute(TextAttribute.STRIKETHROUGH, TextAttribute.STRIKETHROUGH_ON, runStart, runEnd);
+            }
+        }
+        return styled;
+    }
+
+    private static StyledDocument parse(String rtf, String fallbackText) {
+        RTFEditorKit kit = new RTFEditorKit();
+        StyledDocument doc = (StyledDocument) kit.createDefaultDocument();
+        try {
+            kit.read(new ByteArrayInputStream(rtf.getBytes(StandardCharsets.UTF_8)), doc, 0);
+            return doc;
+        } catch (Exception ex) {
+            // 解析失败时退回纯文本，与原先 pane.setText(text) 的行为一致
+            doc = (StyledDocument) kit.createDefaultDocument();
+            try {
+                doc.insertString(0, fallbackText == null ? "" : fallbackText, null);
+            } catch (BadLocationException ignored) {
+            }
+            return doc;
+        }
+    }
+
+    // 一行排版好的字形及其在文本框内的位置
+    private static final class Run {
+        final TextLayout layout;
+        final float x;
+        final float baseline;
+        final float top;
+
+        Run(TextLayout layout, float x, float baseline, float top) {
+            this.layout = layout;
+            this.x = x;
+            this.baseline = baseline;
+            this.top = top;
+        }
+    }
+
+    private static final class DisplayList {
+        final int width;
+        final Font defaultFont;
+        final Color defaultColor;
+        final FontRenderContext frc;
+        final List<Run> runs;
+
+        DisplayList(int width, Font defaultFont, Color defaultColor, FontRenderContext frc, List<Run> runs) {
+            this.width = width;
+            this.defaultFont = defaultFont;
+            this.defaultColor = defaultColor;
+            this.frc = frc;
+            this.runs = runs;
+        }
+
+        boolean matches(int width, Font font, Color color, FontRenderContext frc) {
+            return this.width == width && defaultFont.equals(font) && defaultColor.equals(color)
+                    && this.frc.equals(frc);
+        }
+    }
+}
@@ -1,5 +1,3 @@
-import java.util.List;
-
 public class SendToBackCommand implements Command {
     private final SlidePage page;
     private final SlideElement element;
@@ -12,19 +10,16 @@ public class SendToBackCommand implements Command {
 
     @Override
     public void execute() {
-        List<SlideElement> elements = page.getElements();
-        oldIndex = elements.indexOf(element);
-        if (oldIndex > 0) {
-            elements.remove(oldIndex);
-            elements.add(0, element);
+        oldIndex = page.indexOf(element);
+        if (oldIndex != -1) {
+            page.moveElement(element, 0);
         }
     }
 
     @Override
     public void undo() {
-        List<SlideElement> elements = page.getElements();
-        if (elements.remove(element)) {
-            elements.add(oldIndex, element);
+        if (oldIndex != -1) {
+            page.moveElement(element, oldIndex);
         }
     }
 }
@@ -1,6 +1,11 @@
 import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
                                               
 public abstract class ShapeElement extends SlideElement {
+    private static final long serialVersionUID = 6697036057138746620L;
+
     protected Color fillColor;
     protected Color borderColor;
     protected int width, height;
@@ -8,6 +13,7 @@ public abstract class ShapeElement extends SlideElement {
     // NEW: Fields for border style
     protected int borderThickness;
     protected float[] dashArray; // null for solid, an array for dashed/dotted
+    private transient BasicStroke borderStroke; // 由线宽和虚线样式得到，二者改变时清除
 
     public ShapeElement(int x, int y, int width, int height, Color borderColor, Color fillColor, int borderThickness) {
         super(x, y);
@@ -42,10 +48,12 @@ public Point getRotationCenter() {
 
     public void setFillColor(Color fillColor) {
         this.fillColor = fillColor;
+        appearanceChanged();
     }
 
     public void setBorderColor(Color borderColor) {
         this.borderColor = borderColor;
+        boundsChanged(); // 有无边框影响描边外扩
     }
 
     public Color getFillColor() {
@@ -59,6 +67,8 @@ public Point getRotationCenter() {
     // NEW: Methods to control border style
     public void setBorderStyle(float[] dashArray) {
         this.dashArray = dashArray;
+        borderStroke = null;
+        appearanceChanged();
     }
 
     public float[] getBorderStyle() {
@@ -71,13 +81,58 @@ public Point getRotationCenter() {
         this.y = bounds.y;
         this.width = bounds.width;
         this.height = bounds.height;
+        boundsChanged();
     }
 
     public void setBorderThickness(int thickness) {
         this.borderThickness = thickness;
+        borderStroke = null;
+        boundsChanged();
     }
 
     public int getBorderThickness() {
         return borderThickness;
     }
+
+    @Override
+    void writeData(DataOutput out, SlideFile.ImageSink images) throws IOException {
+        super.writeData(out, images);
+        out.writeInt(width);
+        out.writeInt(height);
+        SlideFile.writeColor(out, fillColor);
+        SlideFile.writeColor(out, borderColor);
+        out.writeInt(borderThickness);
+        SlideFile.writeDash(out, dashArray);
+    }
+
+    @Override
+    void readData(DataInput in, SlideFile.ImageSource images) throws IOException {
+        super.readData(in, images);
+        width = in.readInt();
+        height = in.readInt();
+        fillColor = SlideFile.readColor(in);
+        borderColor = SlideFile.readColor(in);
+        borderThickness = in.readInt();
+        dashArray = SlideFile.readDash(in);
+        borderStroke = null;
+    }
+
+    /**
+     * 边框的线型：平头线帽、斜接，按 dashArray 画虚线。取自 StyleCache，重绘时不再新建。
+     */
+    protected BasicStroke getBorderStroke() {
+        BasicStroke stroke = borderStroke;
+        if (stroke == null) {
+            stroke = StyleCache.stroke(borderThickness, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f,
+                    dashArray, 0.0f);
+            borderStroke = stroke;
+        }
+        return stroke;
+    }
+
+    @Override
+    protected int getStrokeOutset() {
+        // 斜接的拐角会超出半个线宽，按整个线宽估算
+        return borderColor != null ? Math.max(0, borderThickness) : 0;
+    }
 }
\ No newline at end of file
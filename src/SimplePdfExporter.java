@@ -1,140 +1,372 @@
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import java.awt.RenderingHints;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
 
 public class SimplePdfExporter {
 
-    public static void export(Slide slide, File file) throws IOException {
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            writePdf(slide, fos);
-        }
+    /**
+     * 输出方式：RASTER 每页一张 JPEG，与屏幕显示完全一致；VECTOR 输出矢量图形和字形轮廓，文件小且放大清晰。
+     */
+    public enum Mode {
+        RASTER, VECTOR
     }
 
-    private static void writePdf(Slide slide, FileOutputStream os) throws IOException {
-        List<Long> xrefs = new ArrayList<>();
-        long byteCount = 0;
+    /**
+     * 矢量方式下图片的编码：LOSSLESS 一律 Flate 无损压缩；LOSSY 一律 JPEG（DCTDecode）；
+     * AUTO 逐张判断，颜色丰富的照片用 JPEG，图标、截图、纯色图等用无损压缩。透明通道总是无损。
+     */
+    public enum ImageEncoding {
+        AUTO, LOSSLESS, LOSSY
+    }
 
-        // Header
-        String header = "%PDF-1.4\n";
-        byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
-        os.write(headerBytes);
-        byteCount += headerBytes.length;
+    /**
+     * 导出进度回调，在导出线程上调用。
+     */
+    public interface Progress {
+        void pagesWritten(int done, int total);
 
-        int totalPages = slide.getTotalPages();
-        int nextObjId = 3;
+        boolean isCancelled();
+    }
 
-        List<Integer> pageObjIds = new ArrayList<>();
-        for (int i = 0; i < totalPages; i++) {
-            pageObjIds.add(nextObjId);
-            nextObjId += 3; // Page, Content, Image
+    private static final Progress NO_PROGRESS = new Progress() {
+        @Override
+        public void pagesWritten(int done, int total) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    public static void export(Slide slide, File file) throws IOException {
+        export(slide, file, Mode.RASTER, NO_PROGRESS);
+    }
+
+    /**
+     * 导出 PDF。栅格方式下页面在 fork-join 线程池上并行渲染和编码，按页序写出；
+     * 取消时抛出 InterruptedIOException。先写到同目录的临时文件，成功后才替换 file，失败或取消时已有的 file 不受影响。
+     */
+    public static void export(Slide slide, File file, Mode mode, Progress progress) throws IOException {
+        export(slide, file, mode, ImageEncoding.AUTO, progress);
+    }
+
+    /**
+     * 导出 PDF，imageEncoding 只对矢量方式有效。
+     */
+    public static void export(Slide slide, File file, Mode mode, ImageEncoding imageEncoding, Progress progress)
+            throws IOException {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            PdfWriter writer = new PdfWriter(channel, true);
+            if (mode == Mode.VECTOR) {
+                writeVectorPdf(slide, writer, imageEncoding, progress);
+            } else {
+                writePdf(slide, writer, progress);
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temp);
+            }
         }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
 
-        // Obj 1: Catalog
-        xrefs.add(byteCount);
-        String catalog = "1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n";
-        byte[] catalogBytes = catalog.getBytes(StandardCharsets.US_ASCII);
-        os.write(catalogBytes);
-        byteCount += catalogBytes.length;
+    private static void writePdf(Slide slide, PdfWriter writer, Progress progress) throws IOException {
+        int totalPages = slide.getTotalPages();
+        int width = slide.getWidth();
+        int height = slide.getHeight();
 
-        // Obj 2: Pages
-        xrefs.add(byteCount);
+        int catalogId = writer.allocate();
+        int pagesId = writer.allocate();
+        writer.object(catalogId, "<< /Type /Catalog /Pages " + pagesId + " 0 R >>");
         StringBuilder kids = new StringBuilder("[");
-        for (Integer id : pageObjIds) {
-            kids.append(id).append(" 0 R ");
+
+        // Write Pages
+        // 同时在途的页面不超过窗口大小，内存占用与并行度成正比而与页数无关
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int window = parallelism * 2;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<ForkJoinTask<byte[]>> pending = new ArrayList<>(totalPages);
+        try {
+            for (int i = 0; i < Math.min(window, totalPages); i++) {
+                pending.add(submitPage(pool, slide.getAllPages().get(i), width, height));
+            }
+            for (int i = 0; i < totalPages; i++) {
+                if (progress.isCancelled()) {
+                    throw new InterruptedIOException("导出已取消");
+                }
+                int pageObjId = writer.allocate();
+                int contentObjId = writer.allocate();
+                int imageObjId = writer.allocate();
+
+                byte[] imgData = awaitPage(pending.get(i));
+                pending.set(i, null); // 写出后立即释放
+                int ahead = i + window;
+                if (ahead < totalPages) {
+                    pending.add(submitPage(pool, slide.getAllPages().get(ahead), width, height));
+                }
+
+                writer.object(pageObjId, "<< /Type /Page /Parent " + pagesId + " 0 R /Resources << /XObject << /Img"
+                        + i + " " + imageObjId + " 0 R >> >> /Contents " + contentObjId + " 0 R >>");
+                String streamContent = "q " + width + " 0 0 " + height + " 0 0 cm /Img" + i + " Do Q";
+                writer.stream(contentObjId, "", streamContent.getBytes(StandardCharsets.US_ASCII));
+                writer.stream(imageObjId, "/Type /XObject /Subtype /Image /Width " + width + " /Height " + height
+                        + " /ColorSpace /DeviceRGB /BitsPerComponent 8 /Filter /DCTDecode", imgData);
+                kids.append(pageObjId).append(" 0 R ");
+                progress.pagesWritten(i + 1, totalPages);
+            }
+        } finally {
+            pool.shutdownNow();
         }
+
+        // 页面树最后写出，页面对象号在逐页写出时才分配
         kids.append("]");
+        writer.object(pagesId, "<< /Type /Pages /Kids " + kids + " /Count " + totalPages + " /MediaBox [0 0 "
+                + width + " " + height + "] >>");
+        writer.finish(catalogId);
+    }
+
+    private static ForkJoinTask<byte[]> submitPage(ForkJoinPool pool, SlidePage page, int width, int height) {
+        return pool.submit(() -> renderPageJpeg(page, width, height));
+    }
+
+    // 等待页面编码完成；任务中抛出的 IOException 原样抛出
+    private static byte[] awaitPage(ForkJoinTask<byte[]> task) throws IOException {
+        try {
+            return task.join();
+        } catch (RuntimeException ex) {
+            if (ex.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw ex;
+        }
+    }
+
+    // 渲染一页并编码为 JPEG，在线程池中执行
+    private static byte[] renderPageJpeg(SlidePage page, int width, int height) throws IOException {
+        BufferedImage image = PageRenderer.render(page, width, height, width, height, BufferedImage.TYPE_INT_RGB);
 
+        // Convert to JPEG
+        ByteArrayOutputStream imgBaos = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", imgBaos);
+        return imgBaos.toByteArray();
+    }
+
+    private static void writeVectorPdf(Slide slide, PdfWriter writer, ImageEncoding imageEncoding,
+            Progress progress) throws IOException {
+        int totalPages = slide.getTotalPages();
         int width = slide.getWidth();
         int height = slide.getHeight();
 
-        String pages = "2 0 obj\n<< /Type /Pages /Kids " + kids.toString() + " /Count " + totalPages
-                + " /MediaBox [0 0 " + width + " " + height + "] >>\nendobj\n";
-        byte[] pagesBytes = pages.getBytes(StandardCharsets.US_ASCII);
-        os.write(pagesBytes);
-        byteCount += pagesBytes.length;
+        int catalogId = writer.allocate();
+        int pagesId = writer.allocate();
+        writer.object(catalogId, "<< /Type /Catalog /Pages " + pagesId + " 0 R >>");
+        StringBuilder kids = new StringBuilder("[");
 
-        // Write Pages
+        // 共用的背景图、重复插入的 logo 等按内容去重，只写一次，各页共同引用
+        SharedImages sharedImages = new SharedImages(writer, imageEncoding);
+        PdfFontSubsets fonts = new PdfFontSubsets(writer::allocate);
         for (int i = 0; i < totalPages; i++) {
+            if (progress.isCancelled()) {
+                throw new InterruptedIOException("导出已取消");
+            }
             SlidePage page = slide.getAllPages().get(i);
-            int pageObjId = pageObjIds.get(i);
-            int contentObjId = pageObjId + 1;
-            int imageObjId = pageObjId + 2;
-
-            // Render page to image
-            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g2d = image.createGraphics();
-
-            // Anti-aliasing
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-
-            // Draw background
-            page.renderBackground(g2d, width, height);
-            // Draw elements
-            for (SlideElement element : page.getElements()) {
-                element.draw(g2d);
-            }
-            g2d.dispose();
-
-            // Convert to JPEG
-            ByteArrayOutputStream imgBaos = new ByteArrayOutputStream();
-            ImageIO.write(image, "jpg", imgBaos);
-            byte[] imgData = imgBaos.toByteArray();
-
-            // Obj 3+3i: Page
-            xrefs.add(byteCount);
-            String pageStr = pageObjId + " 0 obj\n<< /Type /Page /Parent 2 0 R /Resources << /XObject << /Img" + i + " "
-                    + imageObjId + " 0 R >> >> /Contents " + contentObjId + " 0 R >>\nendobj\n";
-            byte[] pageBytes = pageStr.getBytes(StandardCharsets.US_ASCII);
-            os.write(pageBytes);
-            byteCount += pageBytes.length;
-
-            // Obj 3+3i+1: Content
-            String streamContent = "q " + width + " 0 0 " + height + " 0 0 cm /Img" + i + " Do Q";
-            byte[] streamBytes = streamContent.getBytes(StandardCharsets.US_ASCII);
-
-            xrefs.add(byteCount);
-            String contentObjStr = contentObjId + " 0 obj\n<< /Length " + streamBytes.length + " >>\nstream\n";
-            byte[] contentHeaderBytes = contentObjStr.getBytes(StandardCharsets.US_ASCII);
-            os.write(contentHeaderBytes);
-            os.write(streamBytes);
-            byte[] contentFooterBytes = "\nendstream\nendobj\n".getBytes(StandardCharsets.US_ASCII);
-            os.write(contentFooterBytes);
-            byteCount += contentHeaderBytes.length + streamBytes.length + contentFooterBytes.length;
-
-            // Obj 3+3i+2: Image XObject
-            xrefs.add(byteCount);
-            String imgObjHeader = imageObjId + " 0 obj\n<< /Type /XObject /Subtype /Image /Width " + width + " /Height "
-                    + height + " /ColorSpace /DeviceRGB /BitsPerComponent 8 /Filter /DCTDecode /Length "
-                    + imgData.length + " >>\nstream\n";
-            byte[] imgHeaderBytes = imgObjHeader.getBytes(StandardCharsets.US_ASCII);
-            os.write(imgHeaderBytes);
-            os.write(imgData);
-            byte[] imgFooterBytes = "\nendstream\nendobj\n".getBytes(StandardCharsets.US_ASCII);
-            os.write(imgFooterBytes);
-            byteCount += imgHeaderBytes.length + imgData.length + imgFooterBytes.length;
+            PdfVectorRenderer.Result result = PdfVectorRenderer.render(page, page.getElements(), width, height,
+                    fonts);
+
+            StringBuilder resources = new StringBuilder("<< ");
+            if (!result.getImages().isEmpty()) {
+                resources.append("/XObject << ");
+                for (Map.Entry<String, BufferedImage> e : result.getImages().entrySet()) {
+                    int id = sharedImages.idFor(e.getValue(), result.isTemporaryImage(e.getKey()));
+                    resources.append('/').append(e.getKey()).append(' ').append(id).append(" 0 R ");
+                }
+                resources.append(">> ");
+            }
+            if (!result.getFonts().isEmpty()) {
+                resources.append("/Font << ");
+                for (Map.Entry<String, Integer> e : result.getFonts().entrySet()) {
+                    resources.append('/').append(e.getKey()).append(' ').append(e.getValue()).append(" 0 R ");
+                }
+                resources.append(">> ");
+            }
+            appendDirectResources(resources, "Shading", result.getShadings());
+            appendDirectResources(resources, "ExtGState", result.getGraphicsStates());
+            resources.append(">>");
+
+            int pageId = writer.allocate();
+            int contentId = writer.allocate();
+            writer.flateStream(contentId, "", result.getContent());
+            writer.object(pageId, "<< /Type /Page /Parent " + pagesId + " 0 R /Resources " + resources
+                    + " /Contents " + contentId + " 0 R >>");
+            kids.append(pageId).append(" 0 R ");
+            progress.pagesWritten(i + 1, totalPages);
+        }
+        // 字体子集在所有页面之后写出，此时已收集到全部用到的字形
+        fonts.write(writer);
+        kids.append("]");
+        writer.object(pagesId, "<< /Type /Pages /Kids " + kids + " /Count " + totalPages + " /MediaBox [0 0 "
+                + width + " " + height + "] >>");
+        writer.finish(catalogId);
+    }
+
+    private static void appendDirectResources(StringBuilder resources, String category, Map<String, String> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        resources.append('/').append(category).append(" << ");
+        for (Map.Entry<String, String> e : entries.entrySet()) {
+            resources.append('/').append(e.getKey()).append(' ').append(e.getValue()).append(' ');
+        }
+        resources.append(">> ");
+    }
+
+    /**
+     * 文档内的图像对象表。先按对象身份查找，再按像素内容的 SHA-256 查找，
+     * 因此从文件读回后各自独立的相同图片也只写一次。
+     */
+    private static final class SharedImages {
+        private static final float JPEG_QUALITY = 0.9f;
+        private static final int PHOTO_MIN_PIXELS = 64 * 64;
+        private static final int PHOTO_MIN_COLORS = 1024; // 抽样中不同颜色超过此数视为照片
+        private static final int COLOR_SAMPLES = 16384;
+
+        private final PdfWriter writer;
+        private final ImageEncoding encoding;
+        private final Map<BufferedImage, Integer> byIdentity = new IdentityHashMap<>();
+        private final Map<String, Integer> byContent = new HashMap<>();
+
+        SharedImages(PdfWriter writer, ImageEncoding encoding) {
+            this.writer = writer;
+            this.encoding = encoding;
+        }
+
+        /**
+         * 返回图像的对象号，必要时写出。temporary 表示只出现一次的临时位图，不参与去重。
+         */
+        int idFor(BufferedImage image, boolean temporary) throws IOException {
+            Integer id = byIdentity.get(image);
+            if (id != null) {
+                return id;
+            }
+            int w = image.getWidth();
+            int h = image.getHeight();
+            int[] argb = image.getRGB(0, 0, w, h, null, 0, w);
+            if (temporary) {
+                return write(w, h, argb, image.getColorModel().hasAlpha());
+            }
+            String key = ImageStore.contentHash(w, h, argb);
+            id = byContent.get(key);
+            if (id == null) {
+                id = write(w, h, argb, image.getColorModel().hasAlpha());
+                byContent.put(key, id);
+            }
+            byIdentity.put(image, id);
+            return id;
+        }
+
+        // 写出图像，有透明度时附带无损的灰度 SMask；返回图像对象号
+        private int write(int w, int h, int[] argb, boolean hasAlpha) throws IOException {
+            boolean translucent = false;
+            if (hasAlpha) {
+                for (int p : argb) {
+                    if (p >>> 24 != 255) {
+                        translucent = true;
+                        break;
+                    }
+                }
+            }
+            String smask = "";
+            if (translucent) {
+                byte[] alpha = new byte[w * h];
+                for (int i = 0; i < alpha.length; i++) {
+                    alpha[i] = (byte) (argb[i] >>> 24);
+                }
+                int smaskId = writer.allocate();
+                writer.flateStream(smaskId, "/Type /XObject /Subtype /Image /Width " + w + " /Height " + h
+                        + " /ColorSpace /DeviceGray /BitsPerComponent 8", alpha);
+                smask = " /SMask " + smaskId + " 0 R";
+            }
+            String dict = "/Type /XObject /Subtype /Image /Width " + w + " /Height " + h
+                    + " /ColorSpace /DeviceRGB /BitsPerComponent 8" + smask;
+            int id = writer.allocate();
+            if (useJpeg(w, h, argb)) {
+                writer.stream(id, dict + " /Filter /DCTDecode", encodeJpeg(w, h, argb));
+            } else {
+                byte[] rgb = new byte[w * h * 3];
+                for (int i = 0, p = 0; i < argb.length; i++) {
+                    rgb[p++] = (byte) (argb[i] >> 16);
+                    rgb[p++] = (byte) (argb[i] >> 8);
+                    rgb[p++] = (byte) argb[i];
+                }
+                writer.flateStream(id, dict, rgb);
+            }
+            return id;
         }
 
-        // Xref
-        long xrefOffset = byteCount;
-        os.write("xref\n".getBytes(StandardCharsets.US_ASCII));
-        os.write(("0 " + nextObjId + "\n").getBytes(StandardCharsets.US_ASCII));
-        os.write("0000000000 65535 f \n".getBytes(StandardCharsets.US_ASCII));
-        for (Long offset : xrefs) {
-            String offsetStr = String.format("%010d", offset);
-            os.write((offsetStr + " 00000 n \n").getBytes(StandardCharsets.US_ASCII));
+        private boolean useJpeg(int w, int h, int[] argb) {
+            switch (encoding) {
+                case LOSSY:
+                    return true;
+                case LOSSLESS:
+                    return false;
+                default:
+                    return argb.length >= PHOTO_MIN_PIXELS && countColors(argb) >= PHOTO_MIN_COLORS;
+            }
         }
 
-        // Trailer
-        String trailer = "trailer\n<< /Size " + nextObjId + " /Root 1 0 R >>\nstartxref\n" + xrefOffset + "\n%%EOF\n";
-        os.write(trailer.getBytes(StandardCharsets.US_ASCII));
+        // 均匀抽样统计不同颜色数，达到阈值即停止
+        private static int countColors(int[] argb) {
+            Set<Integer> colors = new HashSet<>();
+            int step = Math.max(1, argb.length / COLOR_SAMPLES);
+            for (int i = 0; i < argb.length && colors.size() < PHOTO_MIN_COLORS; i += step) {
+                colors.add(argb[i] & 0xFFFFFF);
+            }
+            return colors.size();
+        }
+
+        private static byte[] encodeJpeg(int w, int h, int[] argb) throws IOException {
+            BufferedImage rgb = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            rgb.setRGB(0, 0, w, h, argb, 0, w);
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                writer.setOutput(ios);
+                writer.write(null, new IIOImage(rgb, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            return bos.toByteArray();
+        }
     }
 }
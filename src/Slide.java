@@ -6,10 +6,14 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class Slide implements Serializable {
+    private static final long serialVersionUID = -476285706827878627L;
+
     private List<SlidePage> pages; // 幻灯片页面列表
     private int currentPageIndex; // 当前页面索引
     private int width = 1280;
     private int height = 720;
+    private transient ImageStore imageStore; // 旧格式文件反序列化后为 null，首次使用时创建
+    private transient SlideFileState fileState; // 最近一次读取或保存的文件，供增量保存使用
 
     public Slide() {
         // 初始化页面列表和当前页面索引
@@ -17,6 +21,46 @@ public class Slide implements Serializable {
         this.currentPageIndex = -1;
     }
 
+    // SlideFile.open 使用：页面列表按需从文件中读取
+    Slide(List<SlidePage> pages, ImageStore imageStore) {
+        this.pages = pages;
+        this.currentPageIndex = -1;
+        this.imageStore = imageStore;
+    }
+
+    /**
+     * 本幻灯片的图片库。插入图片和设置背景前先经 intern 合并相同的图片。
+     */
+    public synchronized ImageStore getImageStore() {
+        if (imageStore == null) {
+            imageStore = new ImageStore();
+        }
+        return imageStore;
+    }
+
+    synchronized SlideFileState getFileState() {
+        return fileState;
+    }
+
+    synchronized void setFileState(SlideFileState fileState) {
+        this.fileState = fileState;
+    }
+
+    /**
+     * 释放延迟加载所用的文件。之后不能再访问尚未读取的页面和图片，只在不再使用本幻灯片时调用。
+     */
+    public void close() {
+        SlideFileState state = getFileState();
+        if (state != null) {
+            synchronized (state) {
+                state.closed = true; // 取消尚未完成的后台整理
+            }
+        }
+        if (pages instanceof LazyPageList lazy) {
+            lazy.close();
+        }
+    }
+
     public void addPage(SlidePage page) // 添加页面
     {
         pages.add(page);
@@ -0,0 +1,154 @@
+// 文件名： SlideArchive.java
+// 功能： 以内存映射方式打开的 .slide 文件，按需读取页面块和图片块
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 延迟加载的幻灯片所依赖的文件。文件按 1GB 分段映射（单个映射不能超过 2GB），
+ * 段在第一次被访问时才建立映射，读取只是从映射中复制字节，由操作系统按页调入。
+ * <p>
+ * 保存到新文件后调用 switchTo 切换到新文件：旧映射会先全部释放，
+ * 因为在 Windows 上存在映射的文件不能被替换。所有方法线程安全。
+ */
+public class SlideArchive implements AutoCloseable {
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int MOVE_ATTEMPTS = 5;
+
+    private Path path;
+    private FileChannel channel;
+    private long size;
+    private MappedByteBuffer[] segments;
+
+    private SlideArchive(Path path) throws IOException {
+        openChannel(path);
+    }
+
+    public static SlideArchive open(Path path) throws IOException {
+        return new SlideArchive(path);
+    }
+
+    private void openChannel(Path newPath) throws IOException {
+        path = newPath;
+        channel = FileChannel.open(newPath, StandardOpenOption.READ);
+        size = channel.size();
+        segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+    }
+
+    public synchronized Path getPath() {
+        return path;
+    }
+
+    /**
+     * 读取一个块并校验。
+     */
+    public synchronized byte[] read(SlideFile.Chunk chunk) throws IOException {
+        if (channel == null) {
+            throw new IOException("文件已关闭");
+        }
+        if (chunk.offset < 0 || chunk.offset + chunk.length > size) {
+            throw new EOFException("文件不完整");
+        }
+        byte[] data = new byte[chunk.length];
+        int done = 0;
+        while (done < data.length) {
+            long position = chunk.offset + done;
+            int index = (int) (position / SEGMENT_SIZE);
+            MappedByteBuffer segment = segment(index);
+            int within = (int) (position - index * SEGMENT_SIZE);
+            int n = Math.min(data.length - done, segment.capacity() - within);
+            segment.get(within, data, done, n); // 块跨越段边界时分两次复制
+            done += n;
+        }
+        chunk.verify(data);
+        return data;
+    }
+
+    private MappedByteBuffer segment(int index) throws IOException {
+        MappedByteBuffer segment = segments[index];
+        if (segment == null) {
+            long start = index * SEGMENT_SIZE;
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            segments[index] = segment;
+        }
+        return segment;
+    }
+
+    /**
+     * 文件末尾追加了数据之后调用，使新写入的块可以读取。已建立的映射在下次访问时重新建立。
+     */
+    public synchronized void refresh() throws IOException {
+        if (channel == null) {
+            throw new IOException("文件已关闭");
+        }
+        size = channel.size();
+        segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+    }
+
+    /**
+     * 释放当前文件，执行 replace（通常是把新写好的临时文件移动到 target），再打开 target。
+     * 期间其他线程的读取会等待；afterSwitch 在切换完成、释放锁之前执行，用于把块引用改为新文件中的位置。
+     * replace 失败时继续使用原文件。
+     */
+    public synchronized void switchTo(Path target, IORunnable replace, Runnable afterSwitch) throws IOException {
+        Path previous = path;
+        release();
+        try {
+            runWithRetry(replace);
+        } catch (IOException ex) {
+            try {
+                openChannel(previous);
+            } catch (IOException reopenFailure) {
+                ex.addSuppressed(reopenFailure);
+            }
+            throw ex;
+        }
+        openChannel(target);
+        afterSwitch.run();
+    }
+
+    private static void runWithRetry(IORunnable replace) throws IOException {
+        for (int attempt = 1;; attempt++) {
+            try {
+                replace.run();
+                return;
+            } catch (FileSystemException ex) {
+                // Windows 上映射要等垃圾回收后才真正解除，稍后重试
+                if (attempt >= MOVE_ATTEMPTS) {
+                    throw ex;
+                }
+                System.gc();
+                try {
+                    Thread.sleep(50L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private void release() throws IOException {
+        segments = new MappedByteBuffer[0];
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        release();
+    }
+
+    /**
+     * 可以抛出 IOException 的操作。
+     */
+    public interface IORunnable {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,43 @@
+// 文件名： SlideChangeEvent.java
+// 功能： 描述一次页面修改：哪个页面、哪个元素、影响的区域
+
+import java.awt.Rectangle;
+
+/**
+ * 页面修改事件。element 为 null 表示页面级修改（背景、清空等）；
+ * dirtyRegion 为 null 表示整页都需要重绘，否则为修改前后旋转包围盒的并集（逻辑坐标）。
+ */
+public class SlideChangeEvent {
+    private final SlidePage page;
+    private final SlideElement element;
+    private final Rectangle dirtyRegion;
+    private final long pageVersion;
+
+    public SlideChangeEvent(SlidePage page, SlideElement element, Rectangle dirtyRegion) {
+        this.page = page;
+        this.element = element;
+        this.dirtyRegion = dirtyRegion;
+        this.pageVersion = page.getVersion();
+    }
+
+    public SlidePage getPage() {
+        return page;
+    }
+
+    public SlideElement getElement() {
+        return element;
+    }
+
+    public Rectangle getDirtyRegion() {
+        return dirtyRegion == null ? null : new Rectangle(dirtyRegion);
+    }
+
+    public boolean isWholePage() {
+        return dirtyRegion == null;
+    }
+
+    // 事件发出时页面的版本
+    public long getPageVersion() {
+        return pageVersion;
+    }
+}
@@ -0,0 +1,9 @@
+// 文件名： SlideChangeListener.java
+// 功能： 监听幻灯片页面及其元素的修改
+
+/**
+ * 页面或元素被修改后在修改所在的线程（EDT）上同步回调。
+ */
+public interface SlideChangeListener {
+    void slideChanged(SlideChangeEvent event);
+}
@@ -6,6 +6,7 @@ import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.util.List;
 import javax.swing.*;
 
@@ -23,6 +24,9 @@ public class SlideEditorPanel extends JPanel {
     private static final int HANDLE_SIZE = 8;// 控制点位边长为4的正方形
     private static final int ROTATION_HANDLE_OFFSET = 30;
     private static final int ROTATION_HANDLE_SIZE = 8;
+    // 选中框的虚线，每次重绘共用
+    private static final BasicStroke SELECTION_STROKE = StyleCache.stroke(4f, BasicStroke.CAP_BUTT,
+            BasicStroke.JOIN_BEVEL, 10f, new float[] { 9f, 9f }, 0f);
 
     private Rectangle[] resizeHandles = new Rectangle[8];// 八个控制点，八个正方形
     private int activeHandle = -1;// 当前活动的控制点索引
@@ -33,11 +37,26 @@ public class SlideEditorPanel extends JPanel {
 
     private JTextArea activeTextEditor = null;
     private TextElement editingElement = null;
+
+    // 保留模式渲染：交互期间缓存的静态页面（背景 + 非活动元素）
+    private transient BufferedImage belowLayerCache; // 活动元素下方的图层
+    private transient BufferedImage aboveLayerCache; // 活动元素上方的图层，没有则为 null
+    private boolean pageCacheValid = false;
+    private SlidePage cachedPage;
+    private SlideElement cachedActiveElement;
+    private double cachedScaleFactor;
+    private int cachedTranslateX;
+    private int cachedTranslateY;
+    // 监听当前页面的修改，局部重绘并使缓存图层失效
+    private final transient SlideChangeListener pageChangeListener = this::pageChanged;
     
     public SlideEditorPanel(Slide slide)// 构造函数
     {
         this.currentSlide = slide;
         this.currentPage = slide.getCurrentPage();// 设置当前页面
+        if (currentPage != null) {
+            currentPage.addChangeListener(pageChangeListener);
+        }
         InteractionHandler handler = new InteractionHandler(this);// 创建交互处理器
         // 注册鼠标事件监听器
         addMouseListener(handler);
@@ -150,17 +169,19 @@ public class SlideEditorPanel extends JPanel {
 
     // 设置当前编辑的幻灯片页面
     public void setSlidePage(SlidePage newPage) {
-        this.currentPage = newPage;
+        switchPage(newPage);
         this.selectedElement = null;
         this.currentState = State.IDLE;
+        invalidatePageCache();
         repaint();
     }
 
     public void setSlide(Slide slide) {
         this.currentSlide = slide;
-        this.currentPage = slide.getCurrentPage();
+        switchPage(slide.getCurrentPage());
         this.selectedElement = null;
         this.currentState = State.IDLE;
+        invalidatePageCache();
         repaint();
     }
 
@@ -173,105 +194,279 @@ public class SlideEditorPanel extends JPanel {
         // 保存当前的变换
         java.awt.geom.AffineTransform originalTransform = g2d.getTransform();
 
+        if (isRetainedRendering()) {
+            // 拖动/缩放/旋转时：静态页面取自缓存，只重画活动元素和控制点
+            ensurePageCache(g2d);
+            g2d.drawImage(belowLayerCache, 0, 0, getWidth(), getHeight(), null);
+            g2d.translate(translateX, translateY);
+            g2d.scale(scaleFactor, scaleFactor);
+            if (selectedElement != editingElement) {
+                selectedElement.draw(g2d);
+            }
+            if (aboveLayerCache != null) {
+                g2d.setTransform(originalTransform);
+                g2d.drawImage(aboveLayerCache, 0, 0, getWidth(), getHeight(), null);
+                g2d.translate(translateX, translateY);
+                g2d.scale(scaleFactor, scaleFactor);
+            }
+            paintSelection(g2d);
+            g2d.setTransform(originalTransform);
+            return;
+        }
+
         g2d.translate(translateX, translateY);
         g2d.scale(scaleFactor, scaleFactor);
 
-        // 绘制幻灯片背景
+        // 绘制幻灯片背景与边界
+        paintPageBackground(g2d);
+
+        if (currentPage != null) {
+            // 绘制该页元素；局部重绘时只取与裁剪区相交的元素
+            Rectangle clip = g2d.getClipBounds();
+            List<SlideElement> elements = clip != null ? currentPage.getElementsIn(clip) : currentPage.getElements();
+            paintElements(g2d, elements, 0, elements.size());
+            // 绘制选中元素的边框和控制点
+            paintSelection(g2d);
+        }
+        // 恢复变换，以免影响其他可能的绘制（虽然这里是最后一步）
+        g2d.setTransform(originalTransform);
+    }
+
+    // 绘制页面背景和幻灯片边界（逻辑坐标）
+    private void paintPageBackground(Graphics2D g2d) {
         if (currentPage != null) {
             currentPage.renderBackground(g2d, currentSlide.getWidth(), currentSlide.getHeight());
         }
+        g2d.setColor(Color.BLACK);
+        g2d.drawRect(0, 0, currentSlide.getWidth(), currentSlide.getHeight());
+    }
 
-        // 绘制幻灯片边界
-        g.setColor(Color.BLACK);
-        g.drawRect(0, 0, currentSlide.getWidth(), currentSlide.getHeight());
+    // 绘制 [from, to) 区间内的元素（逻辑坐标），跳过与当前裁剪区不相交的元素
+    private void paintElements(Graphics2D g2d, List<SlideElement> elements, int from, int to) {
+        Rectangle clip = g2d.getClipBounds();
+        for (int i = from; i < to; i++) {
+            SlideElement element = elements.get(i);
+            // 正在编辑的元素由 JTextArea 显示，避免与绘制态重叠
+            if (element == editingElement) {
+                continue;
+            }
+            if (clip != null && !clip.intersects(element.getRotatedBounds())) {
+                continue;
+            }
+            element.draw(g2d);
+        }
+    }
 
-        if (currentPage != null) {
-            // 绘制该页所有元素
-            for (SlideElement element : currentPage.getElements()) {
-                // 正在编辑的元素由 JTextArea 显示，避免与绘制态重叠
-                if (element == editingElement) {
-                    continue;
-                }
-                element.draw(g);
+    // 绘制选中元素的边框和控制点（逻辑坐标）
+    private void paintSelection(Graphics2D g2d) {
+        if (selectedElement == null) {
+            return;
+        }
+        java.awt.geom.AffineTransform originalSelectionTransform = g2d.getTransform();
+
+        if (selectedElement.getRotation() != 0&&!(selectedElement instanceof LineElement)) {
+            Rectangle bounds = selectedElement.getBounds();
+            Point center;
+                center = new Point(bounds.x + bounds.width / 2, bounds.y + bounds.height / 2);
+            g2d.rotate(Math.toRadians(selectedElement.getRotation()), center.x, center.y);
+        }
+
+        // 对于直线元素，绘制起点和终点的控制点
+        if (selectedElement instanceof LineElement) {
+            LineElement line = (LineElement) selectedElement;
+            Rectangle startHandle = getHandleForPoint(line.getStartPoint());
+            Rectangle endHandle = getHandleForPoint(line.getEndPoint());
+            g2d.setColor(Color.ORANGE);// 端点颜色
+            // 绘制控制点
+            g2d.fillRect(startHandle.x, startHandle.y, startHandle.width, startHandle.height);
+            g2d.fillRect(endHandle.x, endHandle.y, endHandle.width, endHandle.height);
+
+            g2d.setColor(Color.BLACK);// 控制点边框颜色
+            g2d.drawRect(startHandle.x, startHandle.y, startHandle.width, startHandle.height);
+            g2d.drawRect(endHandle.x, endHandle.y, endHandle.width, endHandle.height);
+        } else // 其他元素，绘制边框和八个控制点
+        {
+            Rectangle bounds = selectedElement.getBounds();// 获取元素边界，四边形控制边界
+            g2d.setColor(Color.BLUE);
+            // 线宽为1，末端方形截断，线条交会处切角连接，miterlimit不生效，虚线段9像素，间隔9像素，偏移0
+            g2d.setStroke(SELECTION_STROKE);
+            // 绘制边框
+            g2d.drawRect(bounds.x - 1, bounds.y - 1, bounds.width + 2, bounds.height + 2);
+
+            // 更新控制点位置
+            updateResizeHandlesForRect();
+
+            // 绘制控制点
+            g2d.setColor(Color.WHITE);
+            g2d.setStroke(StyleCache.solid(1));
+            for (Rectangle handle : resizeHandles) {
+                g2d.fillRect(handle.x, handle.y, handle.width, handle.height);
+                g2d.setColor(Color.BLACK);// 控制点边框（黑色）
+                g2d.drawRect(handle.x, handle.y, handle.width, handle.height);
+                g2d.setColor(Color.WHITE);
             }
-            // 绘制选中元素的边框和控制点
-            if (selectedElement != null) {
-                java.awt.geom.AffineTransform originalSelectionTransform = g2d.getTransform();
-
-                if (selectedElement.getRotation() != 0&&!(selectedElement instanceof LineElement)) {
-                    Rectangle bounds = selectedElement.getBounds();
-                    Point center;
-                        center = new Point(bounds.x + bounds.width / 2, bounds.y + bounds.height / 2);
-                    g2d.rotate(Math.toRadians(selectedElement.getRotation()), center.x, center.y);
-                }
+        }
 
-                // 对于直线元素，绘制起点和终点的控制点
-                if (selectedElement instanceof LineElement) {
-                    LineElement line = (LineElement) selectedElement;
-                    Rectangle startHandle = getHandleForPoint(line.getStartPoint());
-                    Rectangle endHandle = getHandleForPoint(line.getEndPoint());
-                    g2d.setColor(Color.ORANGE);// 端点颜色
-                    // 绘制控制点
-                    g2d.fillRect(startHandle.x, startHandle.y, startHandle.width, startHandle.height);
-                    g2d.fillRect(endHandle.x, endHandle.y, endHandle.width, endHandle.height);
-
-                    g2d.setColor(Color.BLACK);// 控制点边框颜色
-                    g2d.drawRect(startHandle.x, startHandle.y, startHandle.width, startHandle.height);
-                    g2d.drawRect(endHandle.x, endHandle.y, endHandle.width, endHandle.height);
-                } else // 其他元素，绘制边框和八个控制点
-                {
-                    Rectangle bounds = selectedElement.getBounds();// 获取元素边界，四边形控制边界
-                    g2d.setColor(Color.BLUE);
-                    // 线宽为1，末端方形截断，线条交会处切角连接，miterlimit不生效，虚线段9像素，间隔9像素，偏移0
-                    g2d.setStroke(new BasicStroke(4f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 10f,
-                            new float[] { 9f, 9f }, 0f));
-                    // 绘制边框
-                    g2d.drawRect(bounds.x - 1, bounds.y - 1, bounds.width + 2, bounds.height + 2);
-
-                    // 更新控制点位置
-                    updateResizeHandlesForRect();
-
-                    // 绘制控制点
-                    g2d.setColor(Color.WHITE);
-                    g2d.setStroke(new BasicStroke(1));
-                    for (Rectangle handle : resizeHandles) {
-                        g2d.fillRect(handle.x, handle.y, handle.width, handle.height);
-                        g2d.setColor(Color.BLACK);// 控制点边框（黑色）
-                        g2d.drawRect(handle.x, handle.y, handle.width, handle.height);
-                        g2d.setColor(Color.WHITE);
-                    }
-                }
+        // Draw rotation handle
+        Point handleCenter = getRotationHandleCenter(selectedElement);
+        Rectangle handleBounds = getRotationHandleBounds(selectedElement);
 
-                // Draw rotation handle
-                Point handleCenter = getRotationHandleCenter(selectedElement);
-                Rectangle handleBounds = getRotationHandleBounds(selectedElement);
+        // Calculate connector point (top center of the element)
+        Rectangle bounds = selectedElement.getBounds();
+        Point center = new Point(bounds.x + bounds.width / 2, bounds.y + bounds.height / 2);
+        if (selectedElement instanceof LineElement) {
+            LineElement line = (LineElement) selectedElement;
+            Point start = line.getStartPoint();
+            Point end = line.getEndPoint();
+            center = new Point((start.x + end.x) / 2, (start.y + end.y) / 2);
+        }
 
-                // Calculate connector point (top center of the element)
-                Rectangle bounds = selectedElement.getBounds();
-                Point center = new Point(bounds.x + bounds.width / 2, bounds.y + bounds.height / 2);
-                if (selectedElement instanceof LineElement) {
-                    LineElement line = (LineElement) selectedElement;
-                    Point start = line.getStartPoint();
-                    Point end = line.getEndPoint();
-                    center = new Point((start.x + end.x) / 2, (start.y + end.y) / 2);
-                }
+        Point topCenter = new Point(center.x, bounds.y);
+     if (!(selectedElement instanceof LineElement)) {
+        g2d.setColor(Color.BLACK);
+        g2d.setStroke(StyleCache.solid(1));
+        g2d.drawLine(topCenter.x, topCenter.y, handleCenter.x, handleCenter.y);
+
+        g2d.setColor(Color.GREEN);
+        g2d.fillOval(handleBounds.x, handleBounds.y, handleBounds.width, handleBounds.height);
+        g2d.setColor(Color.BLACK);
+        g2d.drawOval(handleBounds.x, handleBounds.y, handleBounds.width, handleBounds.height);
+         }
+        g2d.setTransform(originalSelectionTransform);
+    }
 
-                Point topCenter = new Point(center.x, bounds.y);
-             if (!(selectedElement instanceof LineElement)) {
-                g2d.setColor(Color.BLACK);
-                g2d.setStroke(new BasicStroke(1));
-                g2d.drawLine(topCenter.x, topCenter.y, handleCenter.x, handleCenter.y);
-
-                g2d.setColor(Color.GREEN);
-                g2d.fillOval(handleBounds.x, handleBounds.y, handleBounds.width, handleBounds.height);
-                g2d.setColor(Color.BLACK);
-                g2d.drawOval(handleBounds.x, handleBounds.y, handleBounds.width, handleBounds.height);
-                 }
-                g2d.setTransform(originalSelectionTransform);
-            }
+    // 将逻辑坐标矩形转换为屏幕坐标，向外取整并留 1 像素抗锯齿余量
+    public Rectangle toScreen(Rectangle logical) {
+        int x1 = (int) Math.floor(logical.x * scaleFactor + translateX);
+        int y1 = (int) Math.floor(logical.y * scaleFactor + translateY);
+        int x2 = (int) Math.ceil((logical.x + logical.width) * scaleFactor + translateX);
+        int y2 = (int) Math.ceil((logical.y + logical.height) * scaleFactor + translateY);
+        return new Rectangle(x1 - 1, y1 - 1, x2 - x1 + 2, y2 - y1 + 2);
+    }
+
+    // 选中元素连同选择框、控制点和旋转手柄在屏幕上占据的区域
+    private Rectangle getSelectionScreenBounds() {
+        Rectangle bounds = selectedElement.getRotatedBounds();
+        // 旋转手柄位于元素上方 ROTATION_HANDLE_OFFSET 处，控制点和虚线框按屏幕像素固定大小
+        int margin = ROTATION_HANDLE_OFFSET + (int) Math.ceil((ROTATION_HANDLE_SIZE + HANDLE_SIZE) / scaleFactor) + 4;
+        bounds.grow(margin, margin);
+        return toScreen(bounds);
+    }
+
+    // 只重绘选中元素变化前后覆盖的区域；没有选中元素时退回整块重绘
+    private void repaintSelection(Rectangle screenBoundsBefore) {
+        if (screenBoundsBefore == null || selectedElement == null) {
+            repaint();
+            return;
         }
-        // 恢复变换，以免影响其他可能的绘制（虽然这里是最后一步）
-        g2d.setTransform(originalTransform);
+        repaint(screenBoundsBefore.union(getSelectionScreenBounds()));
+    }
+
+    // 拖动、缩放、旋转期间使用缓存的静态页面图层
+    private boolean isRetainedRendering() {
+        return currentPage != null && selectedElement != null
+                && (currentState == State.MOVING || currentState == State.RESIZING || currentState == State.ROTATING)
+                && currentPage.getElements().contains(selectedElement);
+    }
+
+    /**
+     * 使缓存的页面图层失效。撤销管理器监听器、页面切换以及在命令之外修改元素时调用。
+     */
+    public void invalidatePageCache() {
+        pageCacheValid = false;
+    }
+
+    private void switchPage(SlidePage newPage) {
+        if (currentPage != null) {
+            currentPage.removeChangeListener(pageChangeListener);
+        }
+        this.currentPage = newPage;
+        if (newPage != null) {
+            newPage.addChangeListener(pageChangeListener);
+        }
+    }
+
+    // 页面或元素被修改：活动元素本身不在缓存图层中，拖动时由拖动逻辑局部重绘；其余修改使图层失效并重绘脏区域
+    private void pageChanged(SlideChangeEvent event) {
+        SlideElement element = event.getElement();
+        if (element != null && element == cachedActiveElement && isRetainedRendering()) {
+            return;
+        }
+        invalidatePageCache();
+        if (event.isWholePage() || element == selectedElement) {
+            repaint(); // 选择框和控制点的位置也可能变化
+        } else {
+            repaint(toScreen(event.getDirtyRegion()));
+        }
+    }
+
+    // 按需重建活动元素下方（不透明）与上方（透明）的两层缓存，尺寸按设备像素计算
+    private void ensurePageCache(Graphics2D target) {
+        java.awt.geom.AffineTransform deviceTransform = target.getTransform();
+        double deviceScaleX = deviceTransform.getScaleX();
+        double deviceScaleY = deviceTransform.getScaleY();
+        int imageWidth = Math.max(1, (int) Math.ceil(getWidth() * deviceScaleX));
+        int imageHeight = Math.max(1, (int) Math.ceil(getHeight() * deviceScaleY));
+
+        if (pageCacheValid && cachedPage == currentPage && cachedActiveElement == selectedElement
+                && cachedScaleFactor == scaleFactor && cachedTranslateX == translateX
+                && cachedTranslateY == translateY && belowLayerCache != null
+                && belowLayerCache.getWidth() == imageWidth && belowLayerCache.getHeight() == imageHeight) {
+            return;
+        }
+
+        List<SlideElement> elements = currentPage.getElements();
+        int activeIndex = elements.indexOf(selectedElement);
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+
+        belowLayerCache = reuseOrCreateLayer(belowLayerCache, gc, imageWidth, imageHeight, Transparency.OPAQUE);
+        Graphics2D below = belowLayerCache.createGraphics();
+        below.setRenderingHints(target.getRenderingHints());
+        below.scale(deviceScaleX, deviceScaleY);
+        below.setColor(getBackground());
+        below.fillRect(0, 0, getWidth(), getHeight());
+        below.translate(translateX, translateY);
+        below.scale(scaleFactor, scaleFactor);
+        paintPageBackground(below);
+        paintElements(below, elements, 0, activeIndex);
+        below.dispose();
+
+        if (activeIndex < elements.size() - 1) {
+            aboveLayerCache = reuseOrCreateLayer(aboveLayerCache, gc, imageWidth, imageHeight,
+                    Transparency.TRANSLUCENT);
+            Graphics2D above = aboveLayerCache.createGraphics();
+            above.setComposite(AlphaComposite.Clear);
+            above.fillRect(0, 0, imageWidth, imageHeight);
+            above.setComposite(AlphaComposite.SrcOver);
+            above.setRenderingHints(target.getRenderingHints());
+            above.scale(deviceScaleX, deviceScaleY);
+            above.translate(translateX, translateY);
+            above.scale(scaleFactor, scaleFactor);
+            paintElements(above, elements, activeIndex + 1, elements.size());
+            above.dispose();
+        } else {
+            aboveLayerCache = null;
+        }
+
+        cachedPage = currentPage;
+        cachedActiveElement = selectedElement;
+        cachedScaleFactor = scaleFactor;
+        cachedTranslateX = translateX;
+        cachedTranslateY = translateY;
+        pageCacheValid = true;
+    }
+
+    private static BufferedImage reuseOrCreateLayer(BufferedImage old, GraphicsConfiguration gc, int width,
+            int height, int transparency) {
+        if (old != null && old.getWidth() == width && old.getHeight() == height
+                && old.getTransparency() == transparency) {
+            return old;
+        }
+        if (gc != null) {
+            return gc.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height,
+                transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
     }
 
     // 更新矩形元素的八个控制点位置
@@ -534,6 +729,7 @@ public class SlideEditorPanel extends JPanel {
                     getUndoManager().executeCommand(cmd);
                 }
                 currentState = State.IDLE;
+                panel.invalidatePageCache();
                 panel.setCursor(Cursor.getDefaultCursor());
                 return;
             }
@@ -564,6 +760,7 @@ public class SlideEditorPanel extends JPanel {
 
             currentState = State.IDLE;
             activeHandle = -1;
+            panel.invalidatePageCache();
             panel.setCursor(Cursor.getDefaultCursor());
             originalRectBounds = null;
             originalLineStart = null;
@@ -587,6 +784,8 @@ public class SlideEditorPanel extends JPanel {
             }
 
             Point logicalPoint = panel.toLogical(e.getPoint());
+            // 记录变化前的区域，与变化后的区域合并后局部重绘
+            Rectangle dirtyBefore = panel.selectedElement != null ? panel.getSelectionScreenBounds() : null;
 
             if (panel.currentState == State.ROTATING && panel.selectedElement != null) {
                 Rectangle bounds = panel.selectedElement.getBounds();
@@ -599,7 +798,7 @@ public class SlideEditorPanel extends JPanel {
                 }
                 double angle = Math.toDegrees(Math.atan2(logicalPoint.y - center.y, logicalPoint.x - center.x));
                 panel.selectedElement.setRotation(angle + 90);
-                panel.repaint();
+                panel.repaintSelection(dirtyBefore);
                 return;
             }
 
@@ -655,7 +854,7 @@ public class SlideEditorPanel extends JPanel {
                 panel.selectedElement.move(dx, dy);
             }
             panel.lastMousePoint = logicalPoint;
-            panel.repaint();
+            panel.repaintSelection(dirtyBefore);
         }
 
         // 鼠标移动事件处理
@@ -703,14 +902,11 @@ public class SlideEditorPanel extends JPanel {
 
         // 根据鼠标位置查找元素，返回当前鼠标所指的元素
         private SlideElement findElementAt(Point p) {
-            List<SlideElement> elements = panel.currentPage.getElements();
-            // 逐个扫描
-            for (int i = elements.size() - 1; i >= 0; i--) {
-                if (elements.get(i).contains(p)) {
-                    return elements.get(i);
-                }
+            if (panel.currentPage == null) {
+                return null;
             }
-            return null;
+            // 通过页面的空间索引查询，只检查附近的候选元素
+            return panel.currentPage.findElementAt(p);
         }
 
         // 根据控制点索引获取对应的调整大小光标
@@ -1114,7 +1310,7 @@ public class SlideEditorPanel extends JPanel {
 
         activeTextEditor = new JTextArea(textElement.getText());
         Font elemFont = textElement.getFont();
-        Font scaledFont = elemFont.deriveFont(elemFont.getSize() * (float) scaleFactor);
+        Font scaledFont = FontCatalog.derive(elemFont, elemFont.getStyle(), elemFont.getSize() * (float) scaleFactor);
         activeTextEditor.setFont(scaledFont);
         activeTextEditor.setForeground(textElement.getColor());
         activeTextEditor.setBounds(screenX, screenY, screenW, screenH);
@@ -1219,31 +1415,15 @@ public class SlideEditorPanel extends JPanel {
     this.selectedElement = element;
     this.repaint();
     }
-    // 计算文本内容实际占用的矩形（逻辑坐标）
+    // 计算文本内容实际占用的矩形（逻辑坐标），与 TextElement.draw 共用同一份排版结果
     private Rectangle getTextContentBounds(TextElement t, Graphics g) {
-        FontMetrics fm = g.getFontMetrics(t.getFont());
-        // 与 TextElement.draw 的换行规则一致
+        java.awt.font.FontRenderContext frc = g instanceof Graphics2D g2d ? g2d.getFontRenderContext() : null;
+        TextLayoutEngine.Layout layout = t.getTextLayout(frc);
         int maxWidth = t.getBounds().width - 10;
-        java.util.List<String> lines = new java.util.ArrayList<>();
-        for (String para : t.getText().split("\n", -1)) {
-            if (para.isEmpty()) { lines.add(""); continue; }
-                StringBuilder line = new StringBuilder();
-                    for (char c : para.toCharArray()) {
-                         String test = line.toString() + c;
-                         if (fm.stringWidth(test) > maxWidth && line.length() > 0) {
-                             lines.add(line.toString());
-                             line = new StringBuilder().append(c);
-                         } else {
-                             line.append(c);
-                         }
-                     }
-                    if (line.length() > 0) lines.add(line.toString());
-                     }
-        int lineHeight = fm.getHeight();
-        int contentHeight = lines.size() * lineHeight;
+        int contentHeight = layout.getLines().size() * layout.getLineHeight();
         int x = t.getBounds().x + 5;
-        int y = t.getBounds().y + fm.getAscent(); // 顶部对齐
-        return new Rectangle(x, y - fm.getAscent(), maxWidth, contentHeight);
+        int y = t.getBounds().y; // 顶部对齐
+        return new Rectangle(x, y, maxWidth, contentHeight);
     }
 
     /**
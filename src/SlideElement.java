@@ -2,12 +2,21 @@
 // 文件名： SlideElement.java
 // 功能： 抽象类，表示幻灯片中的一个元素
 import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 
 public abstract class SlideElement implements Serializable {
+    // 固定为旧版本的值，增加方法后仍能读取以 Java 序列化保存的 .slide 文件；Slide、SlidePage 和各元素子类同样固定
+    private static final long serialVersionUID = -3160330726672879692L;
+
     protected int x, y;
     protected double rotation = 0; // Rotation in degrees
     protected Point rotationCenter;
+    private transient SlidePage page; // 所属页面，修改时通知其更新空间索引并发出修改事件
+    private transient long version; // 元素的修改版本，每次修改递增
+    private transient Rectangle lastNotifiedBounds; // 上次通知时的旋转包围盒，用于计算脏区域
     public SlideElement(int x, int y) {
         this.x = x;
         this.y = y;
@@ -20,18 +29,86 @@ public abstract class SlideElement implements Serializable {
     public void move(int dx, int dy) {
         this.x += dx;
         this.y += dy;
+        boundsChanged();
     }
 
     public abstract Rectangle getBounds();// 获取元素边界
 
     public abstract void setBounds(Rectangle bounds);// 设置元素边界
 
+    /**
+     * 获取旋转后的轴对齐包围盒（逻辑坐标），包含描边宽度。
+     * 用于局部重绘和可见性裁剪。
+     */
+    public Rectangle getRotatedBounds() {
+        Rectangle bounds = getBounds();
+        int outset = getStrokeOutset();
+        if (rotation == 0) {
+            bounds.grow(outset, outset);
+            return bounds;
+        }
+        double angleRadians = Math.toRadians(rotation);
+        double cos = Math.abs(Math.cos(angleRadians));
+        double sin = Math.abs(Math.sin(angleRadians));
+        double halfW = bounds.width / 2.0;
+        double halfH = bounds.height / 2.0;
+        double extentX = halfW * cos + halfH * sin + outset;
+        double extentY = halfW * sin + halfH * cos + outset;
+        double cx = bounds.getCenterX();
+        double cy = bounds.getCenterY();
+        int minX = (int) Math.floor(cx - extentX);
+        int minY = (int) Math.floor(cy - extentY);
+        int maxX = (int) Math.ceil(cx + extentX);
+        int maxY = (int) Math.ceil(cy + extentY);
+        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    // 描边超出 getBounds() 的宽度，子类按边框/线条粗细覆盖
+    protected int getStrokeOutset() {
+        return 0;
+    }
+
     public double getRotation() {
         return rotation;
     }
 
     public void setRotation(double rotation) {
         this.rotation = rotation;
+        boundsChanged();
+    }
+
+    public SlidePage getPage() {
+        return page;
+    }
+
+    void setPage(SlidePage page) {
+        this.page = page;
+        this.lastNotifiedBounds = page != null ? getRotatedBounds() : null;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // 位置、尺寸、旋转或描边变化后调用，使所属页面的空间索引保持同步
+    protected void boundsChanged() {
+        fireChanged(true);
+    }
+
+    // 颜色、字体、文字等不影响包围盒的修改后调用
+    protected void appearanceChanged() {
+        fireChanged(false);
+    }
+
+    private void fireChanged(boolean geometry) {
+        version++;
+        if (page == null) {
+            return;
+        }
+        Rectangle after = getRotatedBounds();
+        Rectangle dirty = lastNotifiedBounds == null ? new Rectangle(after) : lastNotifiedBounds.union(after);
+        lastNotifiedBounds = after;
+        page.elementChanged(this, dirty, geometry);
     }
     
     protected Point rotatePoint(Point p, Point center, double angleDegrees) {
@@ -44,6 +121,21 @@ public abstract class SlideElement implements Serializable {
         int newY = center.y + (int) (dx * sin + dy * cos);
         return new Point(newX, newY);
     }
+    // 二进制 .slide 格式（见 SlideFile）中的字段，子类覆盖时先调用父类方法
+    void writeData(DataOutput out, SlideFile.ImageSink images) throws IOException {
+        out.writeInt(x);
+        out.writeInt(y);
+        out.writeDouble(rotation);
+        SlideFile.writePoint(out, rotationCenter);
+    }
+
+    void readData(DataInput in, SlideFile.ImageSource images) throws IOException {
+        x = in.readInt();
+        y = in.readInt();
+        rotation = in.readDouble();
+        rotationCenter = SlideFile.readPoint(in);
+    }
+
     // 新增方法用于访问旋转中心
 public Point getRotationCenter() {
     return rotationCenter;
@@ -51,5 +143,6 @@ public Point getRotationCenter() {
 
 public void setRotationCenter(Point center) {
     this.rotationCenter = center;
+    appearanceChanged();
 }
 }
\ No newline at end of file
@@ -0,0 +1,1108 @@
+// 文件名： SlideFile.java
+// 功能： .slide 文件的二进制容器格式：文件头、页面目录、页面块和图片块
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * .slide 文件的二进制格式（第 1 版）：
+ * <pre>
+ * 文件头（32 字节）  魔数 8 字节、格式版本 u16、保留 u16+u32、目录偏移 u64、目录长度 u32、目录 CRC32 u32
+ * 页面块、图片块     按任意顺序排列，由目录按偏移定位，可以单独读取
+ * 目录              幻灯片宽高和当前页；每个页面块和图片块的偏移、长度和 CRC32；每个图片像素内容的 SHA-256；
+ *                   每个页面引用的图片编号
+ * </pre>
+ * 页面块内每个元素以“类型标签 u16 + 长度 u32 + 字段”保存，字段由各元素类的 writeData/readData 显式读写，
+ * 与类的内部结构和 Java 序列化无关；读取时跳过未知类型和多出的尾部字段，新版本增加的字段不影响旧版本读取。
+ * 图片块保存按行差分后 Deflate 压缩的像素，编码和解码都比 PNG 快得多。内容相同的图片只保存一个图片块，
+ * 读取时按目录中的哈希登记到幻灯片的 ImageStore，不必读取图片块就能与之后插入的相同图片合并。
+ * 没有此文件头的旧文件按 Java 序列化格式读取。
+ */
+public class SlideFile {
+    private static final byte[] MAGIC = { (byte) 0x89, 'S', 'L', 'D', '\r', '\n', 0x1A, '\n' };
+    static final int HEADER_SIZE = 32;
+    static final int FORMAT_VERSION = 1;
+
+    private static final int TAG_RECTANGLE = 1;
+    private static final int TAG_OVAL = 2;
+    private static final int TAG_CIRCLE = 3;
+    private static final int TAG_LINE = 4;
+    private static final int TAG_TEXT = 5;
+    private static final int TAG_IMAGE = 6;
+
+    private static final int BLOB_PIXELS = 1; // 差分 + Deflate 的像素
+
+    private static final long COMPACT_MIN_GARBAGE = 1L << 20;
+    private static final Chunk EMPTY_CHUNK = new Chunk(0, 0, 0); // 已删除的图片块，占住编号
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "slide-compactor");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    /**
+     * 写出时登记元素和背景引用的图片，返回其在文件中的图片编号。
+     */
+    interface ImageSink {
+        int add(LazyImage image) throws IOException;
+    }
+
+    /**
+     * 读取时按编号取得图片。
+     */
+    interface ImageSource {
+        LazyImage get(int index) throws IOException;
+    }
+
+    /**
+     * 写出快照时取得图片的编码数据。
+     */
+    interface BlobEncoder {
+        byte[] encode(LazyImage image) throws IOException;
+    }
+
+    private SlideFile() {
+    }
+
+    /**
+     * 判断文件是否为二进制格式（以魔数开头）。
+     */
+    public static boolean isSlideFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] head = in.readNBytes(MAGIC.length);
+            return Arrays.equals(head, MAGIC);
+        }
+    }
+
+    /**
+     * 读取整个 .slide 文件，旧的 Java 序列化格式同样支持。
+     */
+    public static Slide read(File file) throws IOException, ClassNotFoundException {
+        return read(file, TaskProgress.NONE);
+    }
+
+    /**
+     * 读取整个 .slide 文件，按页（旧格式按读取的字节数）报告进度，可以取消。
+     */
+    public static Slide read(File file, TaskProgress progress) throws IOException, ClassNotFoundException {
+        if (!isSlideFile(file)) {
+            try (ObjectInputStream ois = new ObjectInputStream(
+                    new BufferedInputStream(new ProgressInputStream(new FileInputStream(file), file.length(), progress)))) {
+                return (Slide) ois.readObject();
+            }
+        }
+        Path path = file.toPath().toAbsolutePath();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+            Toc toc = readToc(channel, header);
+            Slide slide = new Slide();
+            ImageStore store = slide.getImageStore();
+            SlideFileState state = new SlideFileState(path, null, toc);
+            ImageSource images = new ImageSource() {
+                private final LazyImage[] decoded = new LazyImage[toc.blobs.size()];
+
+                @Override
+                public LazyImage get(int index) throws IOException {
+                    if (index < 0 || index >= decoded.length) {
+                        return null;
+                    }
+                    if (decoded[index] == null) {
+                        BufferedImage image = decodeImage(readChunk(channel, toc.blobs.get(index)));
+                        decoded[index] = store.intern(LazyImage.of(image, toc.blobHashes.get(index)));
+                        state.registerBlob(decoded[index], index);
+                    }
+                    return decoded[index]; // 同一文件内引用同一编号的元素共用一个图像对象
+                }
+            };
+            slide.setWidth(toc.width);
+            slide.setHeight(toc.height);
+            for (int i = 0; i < toc.pages.size(); i++) {
+                progress.checkCancelled();
+                Chunk chunk = toc.pages.get(i);
+                SlidePage page = readPage(readChunk(channel, chunk), images);
+                slide.addPage(page);
+                state.pageStored(page, chunk);
+                progress.progress(i + 1, toc.pages.size());
+            }
+            slide.setCurrentPageIndex(toc.currentPage);
+            state.recordFile();
+            slide.setFileState(state);
+            return slide;
+        }
+    }
+
+    /**
+     * 以延迟加载方式打开 .slide 文件：只读取文件头和目录，页面在第一次访问时读取，图片在第一次绘制时解码。
+     * 文件以内存映射方式保持打开，不再使用时调用 Slide.close 释放。旧格式文件仍整个读入。
+     */
+    public static Slide open(File file) throws IOException, ClassNotFoundException {
+        return open(file, TaskProgress.NONE);
+    }
+
+    /**
+     * 同 open(File)，旧格式文件整个读入时报告进度，可以取消。
+     */
+    public static Slide open(File file, TaskProgress progress) throws IOException, ClassNotFoundException {
+        if (!isSlideFile(file)) {
+            return read(file, progress);
+        }
+        Path path = file.toPath().toAbsolutePath();
+        Toc toc;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            toc = readToc(channel, readFully(channel, 0, HEADER_SIZE));
+        }
+        ImageStore store = new ImageStore();
+        LazyPageList pages = new LazyPageList(SlideArchive.open(path), toc, store);
+        SlideFileState state = new SlideFileState(path, pages, toc);
+        pages.attach(state);
+        state.recordFile();
+        Slide slide = new Slide(pages, store);
+        slide.setWidth(toc.width);
+        slide.setHeight(toc.height);
+        slide.setCurrentPageIndex(toc.currentPage);
+        slide.setFileState(state);
+        progress.progress(1, 1);
+        return slide;
+    }
+
+    /**
+     * 保存 .slide 文件。
+     * <p>
+     * 保存到读取或上次保存时的同一文件、且文件在此期间未被其他程序修改时增量保存：
+     * 只在文件末尾追加修改过的页面、新图片和新目录，最后改写文件头指向新目录。
+     * 文件头改写之前中断不影响原有内容。被替换的旧块成为空洞，累积到文件的一半以上时在后台整理。
+     * <p>
+     * 其他情况完整写出：先写到同目录的临时文件，完成后替换原文件，写出中途失败不会损坏原文件。
+     * 延迟加载的幻灯片逐页写出，尚未读取的页面临时读取后即丢弃，文件中的图片原样复制；
+     * 写完后幻灯片改为从新文件读取。
+     */
+    public static void write(Slide slide, File file) throws IOException {
+        write(slide, file, TaskProgress.NONE);
+    }
+
+    /**
+     * 同 write(Slide, File)，按页报告进度。取消时抛出 InterruptedIOException，原文件保持不变。
+     * 可以在 EDT 之外调用，期间不能修改幻灯片。
+     */
+    public static void write(Slide slide, File file, TaskProgress progress) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        SlideFileState state = slide.getFileState();
+        if (state == null) {
+            slide.setFileState(writeFull(slide, target, null, progress));
+            return;
+        }
+        boolean compact;
+        Toc snapshot;
+        int generation;
+        synchronized (state) {
+            if (!state.matchesFile(target)) {
+                SlideFileState next = writeFull(slide, target, state.lazy, progress);
+                state.closed = true;
+                slide.setFileState(next);
+                return;
+            }
+            append(slide, state, progress);
+            compact = !state.compacting && state.garbageBytes() >= COMPACT_MIN_GARBAGE
+                    && state.garbageBytes() * 2 > state.length;
+            state.compacting |= compact;
+            snapshot = state.toc;
+            generation = state.generation;
+        }
+        if (compact) {
+            COMPACTOR.execute(() -> compact(state, snapshot, generation));
+        }
+    }
+
+    private static SlideFileState writeFull(Slide slide, Path target, LazyPageList lazy, TaskProgress progress)
+            throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        List<SlidePage> pages = slide.getAllPages();
+        List<LazyImage> blobImages = new ArrayList<>(); // 每个图片块一项
+        Map<LazyImage, Chunk> written = new IdentityHashMap<>();
+        Map<Chunk, Chunk> pageRemap = new IdentityHashMap<>();
+        Map<SlidePage, SlideFileState.PageRecord> records = new IdentityHashMap<>();
+        Toc toc = new Toc(slide.getWidth(), slide.getHeight(), slide.getCurrentPageIndex());
+        SlideFileState state = new SlideFileState(target, lazy, toc);
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChunkOutput out = new ChunkOutput(channel, HEADER_SIZE);
+            Set<Integer> refs = new TreeSet<>(); // 当前页面引用的图片编号
+            // 先按对象身份查找，再按内容哈希查找：未经 ImageStore 登记的相同图片也只写一份
+            ImageSink sink = image -> {
+                Integer index = state.blobIndex.get(image);
+                if (index == null) {
+                    String hash = image.contentHash();
+                    index = hash != null ? state.blobByHash.get(hash) : null;
+                    if (index == null) {
+                        index = blobImages.size();
+                        toc.blobs.add(out.write(image.encoded()));
+                        toc.blobHashes.add(hash);
+                        blobImages.add(image);
+                        if (hash != null) {
+                            state.blobByHash.put(hash, index);
+                        }
+                    }
+                    state.blobIndex.put(image, index);
+                }
+                written.put(image, toc.blobs.get(index));
+                refs.add(index);
+                return index;
+            };
+            for (int i = 0; i < pages.size(); i++) {
+                progress.checkCancelled();
+                progress.progress(i, pages.size());
+                Chunk unloaded = lazy != null ? lazy.slotChunk(i) : null;
+                SlidePage page;
+                try {
+                    page = lazy != null ? lazy.peek(i) : pages.get(i);
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause(); // 原文件中的页面已损坏
+                }
+                refs.clear();
+                Chunk chunk = out.write(writePage(page, sink)); // 先写页面引用的图片块，再写页面块
+                toc.pages.add(chunk);
+                toc.pageBlobs.add(toArray(refs));
+                if (unloaded != null) {
+                    pageRemap.put(unloaded, chunk);
+                } else {
+                    records.put(page, new SlideFileState.PageRecord(chunk, page.getVersion()));
+                }
+            }
+            Chunk tocChunk = out.write(toc.toBytes());
+            out.flush();
+            channel.write(header(tocChunk), 0);
+            channel.force(false);
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        SlideArchive.IORunnable move = () -> Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        try {
+            if (lazy != null) {
+                lazy.switchTo(target, move, pageRemap, written, blobImages.toArray(new LazyImage[0]));
+                lazy.setFileState(state);
+            } else {
+                move.run();
+            }
+        } catch (IOException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        state.replacePages(records);
+        state.recordFile();
+        return state;
+    }
+
+    /**
+     * 把快照写成完整的 .slide 文件：先写到同目录的临时文件，完成后原子地替换 target，
+     * 中途失败不影响已有的 target。pages 为快照中全部页面的编码数据（尚未读取的页面已由调用方读取）。
+     * 图片编号沿用快照的编号，未被任何页面引用的编号写成空块。在后台线程调用。
+     */
+    static void writeSnapshot(SlideSnapshot snapshot, List<SlideSnapshot.PageData> pages, Path target,
+            BlobEncoder encoder) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Map<Integer, LazyImage> images = new HashMap<>();
+        int blobCount = 0;
+        for (SlideSnapshot.PageData page : pages) {
+            for (int i = 0; i < page.ids.length; i++) {
+                images.putIfAbsent(page.ids[i], page.images[i]);
+                blobCount = Math.max(blobCount, page.ids[i] + 1);
+            }
+        }
+        Toc toc = new Toc(snapshot.width, snapshot.height, snapshot.currentPage);
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChunkOutput out = new ChunkOutput(channel, HEADER_SIZE);
+            for (int id = 0; id < blobCount; id++) {
+                LazyImage image = images.get(id);
+                toc.blobs.add(image != null ? out.write(encoder.encode(image)) : EMPTY_CHUNK);
+                toc.blobHashes.add(image != null ? image.knownHash() : null);
+            }
+            for (SlideSnapshot.PageData page : pages) {
+                toc.pages.add(out.write(page.data));
+                toc.pageBlobs.add(page.ids.clone());
+            }
+            Chunk tocChunk = out.write(toc.toBytes());
+            out.flush();
+            channel.write(header(tocChunk), 0);
+            channel.force(false);
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // 增量保存：在 state 所记录的文件末尾追加修改过的页面、新图片和新目录，最后改写文件头
+    private static void append(Slide slide, SlideFileState state, TaskProgress progress) throws IOException {
+        List<SlidePage> pages = slide.getAllPages();
+        LazyPageList lazy = state.lazy;
+        Toc toc = new Toc(slide.getWidth(), slide.getHeight(), slide.getCurrentPageIndex());
+        toc.blobs.addAll(state.toc.blobs); // 图片编号保持不变，未修改的页面块仍然有效
+        toc.blobHashes.addAll(state.toc.blobHashes);
+        Map<LazyImage, Integer> newIndex = new IdentityHashMap<>();
+        Map<String, Integer> newByHash = new HashMap<>();
+        Map<LazyImage, Chunk> appended = new IdentityHashMap<>();
+        Map<SlidePage, SlideFileState.PageRecord> records = new IdentityHashMap<>();
+        Map<Chunk, int[]> previousRefs = new IdentityHashMap<>();
+        for (int i = 0; i < state.toc.pages.size(); i++) {
+            previousRefs.put(state.toc.pages.get(i), state.toc.pageBlobs.get(i));
+        }
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(state.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            try {
+                ChunkOutput out = new ChunkOutput(channel, state.length);
+                Set<Integer> refs = new TreeSet<>();
+                ImageSink sink = image -> {
+                    Integer index = state.blobIndex.get(image);
+                    if (index == null) {
+                        index = newIndex.get(image);
+                    }
+                    if (index == null) {
+                        String hash = image.contentHash();
+                        if (hash != null) {
+                            index = state.blobByHash.get(hash);
+                            if (index == null) {
+                                index = newByHash.get(hash);
+                            }
+                        }
+                        if (index == null) {
+                            index = toc.blobs.size();
+                            Chunk chunk = out.write(image.encoded());
+                            toc.blobs.add(chunk);
+                            toc.blobHashes.add(hash);
+                            appended.put(image, chunk);
+                            if (hash != null) {
+                                newByHash.put(hash, index);
+                            }
+                        }
+                        newIndex.put(image, index);
+                    }
+                    refs.add(index);
+                    return index;
+                };
+                for (int i = 0; i < pages.size(); i++) {
+                    progress.checkCancelled();
+                    progress.progress(i, pages.size());
+                    Chunk chunk = lazy != null ? lazy.slotChunk(i) : null;
+                    int[] pageRefs = chunk != null ? previousRefs.get(chunk) : null;
+                    if (chunk == null) {
+                        SlidePage page = pages.get(i);
+                        chunk = state.unchangedChunk(page);
+                        if (chunk != null) {
+                            pageRefs = previousRefs.get(chunk);
+                        } else {
+                            refs.clear();
+                            chunk = out.write(writePage(page, sink));
+                            pageRefs = toArray(refs);
+                        }
+                        records.put(page, new SlideFileState.PageRecord(chunk, page.getVersion()));
+                    }
+                    toc.pages.add(chunk);
+                    toc.pageBlobs.add(pageRefs);
+                }
+                Chunk tocChunk = out.write(toc.toBytes());
+                out.flush();
+                channel.force(false); // 新内容落盘之后才让文件头指向它
+                channel.write(header(tocChunk), 0);
+                channel.force(false);
+                completed = true;
+            } finally {
+                if (!completed) {
+                    channel.truncate(state.length); // 去掉写了一半的尾部，文件头仍指向原目录
+                }
+            }
+        }
+        state.toc = toc;
+        state.blobIndex.putAll(newIndex);
+        state.blobByHash.putAll(newByHash);
+        state.replacePages(records);
+        state.recordFile();
+        if (lazy != null) {
+            lazy.appended(appended);
+        }
+    }
+
+    // 后台整理：把 snapshot 仍引用的块依次复制到新文件，不再被任何页面引用的图片块换成空块（编号不变），
+    // 然后在没有新的保存发生的前提下替换原文件
+    private static void compact(SlideFileState state, Toc snapshot, int generation) {
+        Path temp = state.path.resolveSibling(state.path.getFileName() + ".compact");
+        try {
+            Map<Chunk, Chunk> remap = new IdentityHashMap<>();
+            Toc toc = new Toc(snapshot.width, snapshot.height, snapshot.currentPage);
+            boolean[] live = new boolean[snapshot.blobs.size()];
+            try (FileChannel in = FileChannel.open(state.path, StandardOpenOption.READ);
+                    FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING)) {
+                ChunkOutput out = new ChunkOutput(channel, HEADER_SIZE);
+                for (int i = 0; i < snapshot.pages.size(); i++) {
+                    Chunk chunk = snapshot.pages.get(i);
+                    byte[] data = readChunk(in, chunk);
+                    int[] pageRefs = snapshot.pageBlobs.get(i);
+                    for (int index : pageRefs) {
+                        if (index >= 0 && index < live.length) {
+                            live[index] = true;
+                        }
+                    }
+                    Chunk moved = remap.get(chunk);
+                    if (moved == null) {
+                        moved = out.write(data);
+                        remap.put(chunk, moved);
+                    }
+                    toc.pages.add(moved);
+                    toc.pageBlobs.add(pageRefs);
+                }
+                for (int i = 0; i < live.length; i++) {
+                    Chunk chunk = snapshot.blobs.get(i);
+                    if (live[i]) {
+                        Chunk moved = out.write(readChunk(in, chunk));
+                        remap.put(chunk, moved);
+                        toc.blobs.add(moved);
+                        toc.blobHashes.add(snapshot.blobHashes.get(i));
+                    } else {
+                        toc.blobs.add(EMPTY_CHUNK);
+                        toc.blobHashes.add(null);
+                    }
+                }
+                Chunk tocChunk = out.write(toc.toBytes());
+                out.flush();
+                channel.write(header(tocChunk), 0);
+                channel.force(false);
+            }
+            synchronized (state) {
+                if (state.closed || state.generation != generation || !state.matchesFile(state.path)) {
+                    Files.deleteIfExists(temp); // 整理期间又保存过，下次保存时重新判断
+                    return;
+                }
+                Map<LazyImage, Chunk> bindings = new IdentityHashMap<>();
+                state.blobIndex.entrySet().removeIf(e -> !live[e.getValue()]);
+                state.blobByHash.values().removeIf(index -> !live[index]);
+                state.blobIndex.forEach((image, index) -> bindings.put(image, toc.blobs.get(index)));
+                SlideArchive.IORunnable move = () -> Files.move(temp, state.path,
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (state.lazy != null) {
+                    state.lazy.switchTo(state.path, move, remap, bindings, null);
+                } else {
+                    move.run();
+                }
+                state.toc = toc;
+                state.remapPages(remap);
+                state.recordFile();
+            }
+        } catch (IOException | RuntimeException ex) {
+            ex.printStackTrace();
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // 临时文件下次整理时覆盖
+            }
+        } finally {
+            synchronized (state) {
+                state.compacting = false;
+            }
+        }
+    }
+
+    private static int[] toArray(Set<Integer> indexes) {
+        return indexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // ---- 页面与元素 ----
+
+    static byte[] writePage(SlidePage page, ImageSink images) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        page.writeData(out, images);
+        // 正在导入的图片占位元素只在界面上显示，不写入文件（自动保存可能在导入期间发生）
+        List<SlideElement> elements = new ArrayList<>(page.getElements());
+        elements.removeIf(element -> element instanceof ImageElement image && image.isLoading());
+        out.writeInt(elements.size());
+        ByteArrayOutputStream elementBytes = new ByteArrayOutputStream(256);
+        DataOutputStream elementOut = new DataOutputStream(elementBytes);
+        for (SlideElement element : elements) {
+            elementBytes.reset();
+            element.writeData(elementOut, images);
+            out.writeShort(tagOf(element));
+            out.writeInt(elementBytes.size());
+            elementBytes.writeTo(out);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static SlidePage readPage(byte[] data, ImageSource images) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        SlidePage page = new SlidePage();
+        page.readData(in, images);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int tag = in.readUnsignedShort();
+            int length = in.readInt();
+            byte[] fields = in.readNBytes(length);
+            if (fields.length != length) {
+                throw new EOFException("页面数据不完整");
+            }
+            SlideElement element = newElement(tag);
+            if (element == null) {
+                continue; // 更新版本写入的未知元素类型
+            }
+            element.readData(new DataInputStream(new ByteArrayInputStream(fields)), images);
+            page.addElement(element);
+        }
+        return page;
+    }
+
+    private static int tagOf(SlideElement element) {
+        Class<?> type = element.getClass();
+        if (type == RectangleElement.class) {
+            return TAG_RECTANGLE;
+        } else if (type == CircleElement.class) {
+            return TAG_CIRCLE;
+        } else if (type == OvalElement.class) {
+            return TAG_OVAL;
+        } else if (type == LineElement.class) {
+            return TAG_LINE;
+        } else if (type == TextElement.class) {
+            return TAG_TEXT;
+        } else if (type == ImageElement.class) {
+            return TAG_IMAGE;
+        }
+        throw new IllegalArgumentException("无法保存的元素类型: " + type.getName());
+    }
+
+    // 创建待 readData 填充的空元素
+    private static SlideElement newElement(int tag) {
+        switch (tag) {
+            case TAG_RECTANGLE:
+                return new RectangleElement(0, 0, 0, 0, null, null, 0);
+            case TAG_OVAL:
+                return new OvalElement(0, 0, 0, 0, null, null, 0);
+            case TAG_CIRCLE:
+                return new CircleElement(0, 0, 0, null, null, 0);
+            case TAG_LINE:
+                return new LineElement(0, 0, 0, 0, null, 0);
+            case TAG_TEXT:
+                return new TextElement("", 0, 0, 0, 0);
+            case TAG_IMAGE:
+                return new ImageElement(0, 0, (LazyImage) null);
+            default:
+                return null;
+        }
+    }
+
+    // ---- 字段读写工具，供各元素类使用 ----
+
+    static void writeColor(DataOutput out, Color color) throws IOException {
+        out.writeBoolean(color != null);
+        if (color != null) {
+            out.writeInt(color.getRGB());
+        }
+    }
+
+    static Color readColor(DataInput in) throws IOException {
+        return in.readBoolean() ? new Color(in.readInt(), true) : null;
+    }
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writePoint(DataOutput out, Point p) throws IOException {
+        out.writeBoolean(p != null);
+        if (p != null) {
+            out.writeInt(p.x);
+            out.writeInt(p.y);
+        }
+    }
+
+    static Point readPoint(DataInput in) throws IOException {
+        return in.readBoolean() ? new Point(in.readInt(), in.readInt()) : null;
+    }
+
+    static void writeDash(DataOutput out, float[] dash) throws IOException {
+        out.writeInt(dash == null ? -1 : dash.length);
+        if (dash != null) {
+            for (float f : dash) {
+                out.writeFloat(f);
+            }
+        }
+    }
+
+    static float[] readDash(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        float[] dash = new float[length];
+        for (int i = 0; i < length; i++) {
+            dash[i] = in.readFloat();
+        }
+        return dash;
+    }
+
+    static void writeFont(DataOutput out, Font font) throws IOException {
+        out.writeBoolean(font != null);
+        if (font != null) {
+            writeString(out, font.getName());
+            out.writeInt(font.getStyle());
+            out.writeFloat(font.getSize2D());
+        }
+    }
+
+    static Font readFont(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String name = readString(in);
+        int style = in.readInt();
+        float size = in.readFloat();
+        return FontCatalog.getFont(name, style, size);
+    }
+
+    // ---- 图片块 ----
+
+    // 图片块：编码 u8、宽 u32、高 u32、是否含透明通道 u8，随后是 Deflate 压缩的差分像素。
+    // 每个像素的四个字节各自减去左侧像素对应字节，渐变和照片的压缩率与 PNG 的 Sub 过滤器相当
+    static byte[] encodeImage(BufferedImage image) throws IOException {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        boolean alpha = image.getColorModel().hasAlpha();
+        int[] argb = pixels(image);
+        byte[] filtered = new byte[w * h * 4];
+        for (int y = 0; y < h; y++) {
+            int prev = 0;
+            for (int x = 0; x < w; x++) {
+                int p = argb[y * w + x];
+                int o = (y * w + x) * 4;
+                filtered[o] = (byte) ((p >>> 24) - (prev >>> 24));
+                filtered[o + 1] = (byte) ((p >>> 16) - (prev >>> 16));
+                filtered[o + 2] = (byte) ((p >>> 8) - (prev >>> 8));
+                filtered[o + 3] = (byte) (p - prev);
+                prev = p;
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(filtered.length / 4 + 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(BLOB_PIXELS);
+        out.writeInt(w);
+        out.writeInt(h);
+        out.writeBoolean(alpha);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(filtered);
+            deflater.finish();
+            byte[] buffer = new byte[65536];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static BufferedImage decodeImage(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int encoding = in.readUnsignedByte();
+        if (encoding != BLOB_PIXELS) {
+            throw new IOException("不支持的图片编码: " + encoding);
+        }
+        int w = in.readInt();
+        int h = in.readInt();
+        boolean alpha = in.readBoolean();
+        int header = 1 + 4 + 4 + 1;
+        byte[] filtered = new byte[w * h * 4];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, header, data.length - header);
+            int n = 0;
+            while (n < filtered.length) {
+                int read = inflater.inflate(filtered, n, filtered.length - n);
+                if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new EOFException("图片数据不完整");
+                }
+                n += read;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("图片数据损坏", e);
+        } finally {
+            inflater.end();
+        }
+        BufferedImage image = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] argb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < h; y++) {
+            int a = 0, r = 0, g = 0, b = 0;
+            for (int x = 0; x < w; x++) {
+                int o = (y * w + x) * 4;
+                a = (a + filtered[o]) & 0xFF;
+                r = (r + filtered[o + 1]) & 0xFF;
+                g = (g + filtered[o + 2]) & 0xFF;
+                b = (b + filtered[o + 3]) & 0xFF;
+                argb[y * w + x] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+        return image;
+    }
+
+    // 取得 ARGB 像素；常见的 INT 类型直接读数据缓冲区，避免逐像素转换
+    private static int[] pixels(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt buffer
+                && buffer.getData().length == w * h) {
+            int[] data = buffer.getData();
+            if (type == BufferedImage.TYPE_INT_ARGB) {
+                return data;
+            }
+            int[] argb = new int[data.length];
+            for (int i = 0; i < data.length; i++) {
+                argb[i] = data[i] | 0xFF000000;
+            }
+            return argb;
+        }
+        return image.getRGB(0, 0, w, h, null, 0, w);
+    }
+
+    // ---- 文件头、目录与块 ----
+
+    static ByteBuffer header(Chunk toc) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC);
+        header.putShort((short) FORMAT_VERSION);
+        header.putShort((short) 0);
+        header.putInt(0);
+        header.putLong(toc.offset);
+        header.putInt(toc.length);
+        header.putInt(toc.crc);
+        header.flip();
+        return header;
+    }
+
+    static Toc readToc(FileChannel channel, ByteBuffer header) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("不是幻灯片文件");
+        }
+        int version = header.getShort() & 0xFFFF;
+        if (version > FORMAT_VERSION) {
+            throw new IOException("文件由更新版本的程序创建（格式版本 " + version + "）");
+        }
+        header.getShort();
+        header.getInt();
+        Chunk tocChunk = new Chunk(header.getLong(), header.getInt(), header.getInt());
+        return Toc.parse(readChunk(channel, tocChunk));
+    }
+
+    static byte[] readChunk(FileChannel channel, Chunk chunk) throws IOException {
+        ByteBuffer buffer = readFully(channel, chunk.offset, chunk.length);
+        byte[] data = buffer.array();
+        chunk.verify(data);
+        return data;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("文件不完整");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 目录中的一项：块的位置、长度和校验值。
+     */
+    static final class Chunk {
+        final long offset;
+        final int length;
+        final int crc;
+
+        Chunk(long offset, int length, int crc) {
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+
+        void verify(byte[] data) throws IOException {
+            if (crc(data, 0, data.length) != crc) {
+                throw new IOException("文件已损坏（偏移 " + offset + " 处的数据校验失败）");
+            }
+        }
+
+        static int crc(byte[] data, int offset, int length) {
+            CRC32 crc32 = new CRC32();
+            crc32.update(data, offset, length);
+            return (int) crc32.getValue();
+        }
+    }
+
+    static final class Toc {
+        final int width;
+        final int height;
+        final int currentPage;
+        final List<Chunk> pages = new ArrayList<>();
+        final List<Chunk> blobs = new ArrayList<>();
+        final List<String> blobHashes = new ArrayList<>(); // 与 blobs 逐项对应，未知时为 null
+        final List<int[]> pageBlobs = new ArrayList<>(); // 与 pages 逐项对应，页面引用的图片编号
+
+        Toc(int width, int height, int currentPage) {
+            this.width = width;
+            this.height = height;
+            this.currentPage = currentPage;
+        }
+
+        byte[] toBytes() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + (pages.size() + blobs.size()) * 16);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(currentPage);
+            writeChunks(out, pages);
+            writeChunks(out, blobs);
+            out.writeInt(blobHashes.size());
+            for (String hash : blobHashes) {
+                out.writeBoolean(hash != null);
+                if (hash != null) {
+                    out.write(HexFormat.of().parseHex(hash));
+                }
+            }
+            out.writeInt(pageBlobs.size());
+            for (int[] refs : pageBlobs) {
+                out.writeInt(refs.length);
+                for (int index : refs) {
+                    out.writeInt(index);
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        static Toc parse(byte[] data) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            Toc toc = new Toc(in.readInt(), in.readInt(), in.readInt());
+            readChunks(in, toc.pages);
+            readChunks(in, toc.blobs);
+            int hashes = in.readInt();
+            if (hashes != toc.blobs.size()) {
+                throw new IOException("文件已损坏（图片哈希表与图片数目不符）");
+            }
+            for (int i = 0; i < hashes; i++) {
+                byte[] digest = null;
+                if (in.readBoolean()) {
+                    digest = new byte[32];
+                    in.readFully(digest);
+                }
+                toc.blobHashes.add(digest != null ? HexFormat.of().formatHex(digest) : null);
+            }
+            int pageCount = in.readInt();
+            if (pageCount != toc.pages.size()) {
+                throw new IOException("文件已损坏（页面引用表与页面数目不符）");
+            }
+            for (int i = 0; i < pageCount; i++) {
+                int[] refs = new int[in.readInt()];
+                for (int k = 0; k < refs.length; k++) {
+                    refs[k] = in.readInt();
+                }
+                toc.pageBlobs.add(refs);
+            }
+            return toc;
+        }
+
+        /**
+         * toBytes 的结果长度，不必实际编码。
+         */
+        int encodedLength() {
+            int length = 12 + 4 + pages.size() * 16 + 4 + blobs.size() * 16 + 4;
+            for (String hash : blobHashes) {
+                length += hash != null ? 33 : 1;
+            }
+            length += 4;
+            for (int[] refs : pageBlobs) {
+                length += 4 + refs.length * 4;
+            }
+            return length;
+        }
+
+        /**
+         * 标记被某个页面引用的图片编号。
+         */
+        boolean[] liveBlobs() {
+            boolean[] live = new boolean[blobs.size()];
+            for (int[] refs : pageBlobs) {
+                for (int index : refs) {
+                    if (index >= 0 && index < live.length) {
+                        live[index] = true;
+                    }
+                }
+            }
+            return live;
+        }
+
+        private static void writeChunks(DataOutputStream out, List<Chunk> chunks) throws IOException {
+            out.writeInt(chunks.size());
+            for (Chunk chunk : chunks) {
+                out.writeLong(chunk.offset);
+                out.writeInt(chunk.length);
+                out.writeInt(chunk.crc);
+            }
+        }
+
+        private static void readChunks(DataInputStream in, List<Chunk> chunks) throws IOException {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                chunks.add(new Chunk(in.readLong(), in.readInt(), in.readInt()));
+            }
+        }
+    }
+
+    /**
+     * 读取旧格式文件时按字节数报告进度（以 KB 计），取消时抛出 InterruptedIOException。
+     */
+    private static final class ProgressInputStream extends FilterInputStream {
+        private final TaskProgress progress;
+        private final int total;
+        private long read;
+
+        ProgressInputStream(InputStream in, long length, TaskProgress progress) {
+            super(in);
+            this.progress = progress;
+            this.total = (int) Math.max(1, Math.min(Integer.MAX_VALUE, length >> 10));
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            progress.checkCancelled();
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                advance(n);
+            }
+            return n;
+        }
+
+        private void advance(int n) {
+            read += n;
+            progress.progress((int) Math.min(total, read >> 10), total);
+        }
+    }
+
+    /**
+     * 顺序追加块并记录位置。小块先攒在缓冲区里，大块直接写入通道。
+     */
+    static final class ChunkOutput {
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long position;
+
+        ChunkOutput(FileChannel channel, long start) throws IOException {
+            this.channel = channel;
+            this.position = start;
+            channel.position(start);
+        }
+
+        Chunk write(byte[] data) throws IOException {
+            Chunk chunk = new Chunk(position, data.length, Chunk.crc(data, 0, data.length));
+            if (data.length > buffer.remaining()) {
+                flush();
+            }
+            if (data.length > buffer.capacity()) {
+                ByteBuffer wrapped = ByteBuffer.wrap(data);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+            } else {
+                buffer.put(data);
+            }
+            position += data.length;
+            return chunk;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+// 文件名： SlideFileState.java
+// 功能： 记录幻灯片与其 .slide 文件的对应关系，供增量保存和后台整理使用
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 一个幻灯片最近一次读取或保存的文件：当前目录、每个页面写在哪个块中以及写出时的页面版本、
+ * 每个图片对应的图片编号。增量保存据此只追加修改过的页面和新图片，见 SlideFile.write。
+ * <p>
+ * 保存和整理在本对象上同步；页面记录另有自己的锁，延迟加载页面时登记记录不必等待正在进行的保存。
+ */
+final class SlideFileState {
+    final Path path;
+    final LazyPageList lazy; // 延迟加载时为页面列表，否则为 null
+
+    SlideFile.Toc toc;
+    long length; // 文件长度，用于判断文件是否被其他程序修改
+    FileTime modified;
+    int generation; // 每次保存或整理后递增，后台整理据此判断结果是否仍然适用
+    boolean compacting;
+    boolean closed;
+
+    private final Map<SlidePage, PageRecord> pages = Collections.synchronizedMap(new IdentityHashMap<>());
+    final Map<LazyImage, Integer> blobIndex = new IdentityHashMap<>();
+    final Map<String, Integer> blobByHash = new HashMap<>();
+
+    SlideFileState(Path path, LazyPageList lazy, SlideFile.Toc toc) {
+        this.path = path;
+        this.lazy = lazy;
+        this.toc = toc;
+    }
+
+    /**
+     * 页面在文件中的位置和写出（或读取）时的版本。版本未变的页面保存时不必重写。
+     */
+    static final class PageRecord {
+        final SlideFile.Chunk chunk;
+        final long version;
+
+        PageRecord(SlideFile.Chunk chunk, long version) {
+            this.chunk = chunk;
+            this.version = version;
+        }
+    }
+
+    /**
+     * 登记刚从 chunk 读取或写入 chunk 的页面。
+     */
+    void pageStored(SlidePage page, SlideFile.Chunk chunk) {
+        pages.put(page, new PageRecord(chunk, page.getVersion()));
+    }
+
+    /**
+     * 页面自上次读取或保存以来没有修改时返回其所在的块，否则返回 null。
+     */
+    SlideFile.Chunk unchangedChunk(SlidePage page) {
+        PageRecord record = pages.get(page);
+        return record != null && record.version == page.getVersion() ? record.chunk : null;
+    }
+
+    /**
+     * 保存后用 records 替换全部页面记录（不再属于幻灯片的页面随之丢弃）。
+     */
+    void replacePages(Map<SlidePage, PageRecord> records) {
+        synchronized (pages) {
+            pages.clear();
+            pages.putAll(records);
+        }
+    }
+
+    /**
+     * 文件整理后按 remap 改写页面记录，块已不存在的记录丢弃。
+     */
+    void remapPages(Map<SlideFile.Chunk, SlideFile.Chunk> remap) {
+        synchronized (pages) {
+            pages.replaceAll((page, record) -> {
+                SlideFile.Chunk moved = remap.get(record.chunk);
+                return moved == null ? null : new PageRecord(moved, record.version);
+            });
+            pages.values().removeIf(record -> record == null);
+        }
+    }
+
+    void registerBlob(LazyImage image, int index) {
+        blobIndex.putIfAbsent(image, index);
+        String hash = toc.blobHashes.get(index);
+        if (hash != null) {
+            blobByHash.putIfAbsent(hash, index);
+        }
+    }
+
+    /**
+     * 记录文件当前的长度和修改时间（读取或写完之后调用）。
+     */
+    void recordFile() throws IOException {
+        length = Files.size(path);
+        modified = Files.getLastModifiedTime(path);
+        generation++;
+    }
+
+    /**
+     * 文件仍是上次保存后的样子（没有被其他程序替换或修改）时才能增量保存。
+     */
+    boolean matchesFile(Path target) {
+        if (closed || !path.equals(target)) {
+            return false;
+        }
+        try {
+            return Files.size(path) == length && Files.getLastModifiedTime(path).equals(modified);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * 整理可以回收的字节数：被替换的页面块、旧目录和不再被页面引用的图片块。
+     */
+    long garbageBytes() {
+        long live = SlideFile.HEADER_SIZE + toc.encodedLength();
+        for (SlideFile.Chunk chunk : toc.pages) {
+            live += chunk.length;
+        }
+        boolean[] referenced = toc.liveBlobs();
+        for (int i = 0; i < toc.blobs.size(); i++) {
+            if (referenced[i]) {
+                live += toc.blobs.get(i).length;
+            }
+        }
+        return length - live;
+    }
+}
@@ -3,18 +3,27 @@
 //功能： 表示幻灯片中的单个页面，包含多个幻灯片元素
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import javax.imageio.ImageIO;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 
 public class SlidePage implements Serializable {
+    private static final long serialVersionUID = -1787879127340523416L;
+
     private List<SlideElement> elements;
+    private transient SpatialIndex spatialIndex; // 命中测试用的空间索引，按需构建
+    private transient volatile long version; // 页面内容的修改版本，供缩略图等缓存判断是否过期
+    private transient List<SlideChangeListener> changeListeners;
     private java.awt.Color backgroundColor = java.awt.Color.WHITE;
-    private transient BufferedImage backgroundImage;
+    private transient LazyImage backgroundImage; // 从文件延迟加载的图片在第一次绘制时才解码
     public enum BackgroundMode {
         SOLID, GRADIENT, IMAGE_STRETCH, IMAGE_TILE
     }
@@ -29,29 +38,153 @@ public class SlidePage implements Serializable {
 
     public void addElement(SlideElement element) {
         elements.add(element);
+        element.setPage(this);
+        if (spatialIndex != null) {
+            spatialIndex.append(element);
+        }
+        changed(element, element.getRotatedBounds());
     }
 
     public void addElement(int index, SlideElement element) {
-        if (index >= 0 && index <= elements.size()) {
+        if (index >= 0 && index < elements.size()) {
             elements.add(index, element);
+            element.setPage(this);
+            if (spatialIndex != null) {
+                spatialIndex.append(element);
+                spatialIndex.renumber(elements);
+            }
+            changed(element, element.getRotatedBounds());
         } else {
-            elements.add(element);
+            addElement(element);
         }
     }
 
     public void removeElement(SlideElement element) {
-        elements.remove(element);
+        if (elements.remove(element)) {
+            if (spatialIndex != null) {
+                spatialIndex.remove(element);
+            }
+            if (element.getPage() == this) {
+                element.setPage(null);
+            }
+            changed(element, element.getRotatedBounds());
+        }
     }
 
+    /**
+     * 返回只读的元素列表（按 z 序从底到顶）。增删和重排请使用本类的方法，以保持空间索引同步。
+     */
     public List<SlideElement> getElements() {
-        return elements;
+        return Collections.unmodifiableList(elements);
+    }
+
+    public int indexOf(SlideElement element) {
+        return elements.indexOf(element);
+    }
+
+    /**
+     * 把元素移动到指定的 z 序位置，供置于顶层/底层及其撤销使用。
+     */
+    public boolean moveElement(SlideElement element, int newIndex) {
+        int oldIndex = elements.indexOf(element);
+        if (oldIndex == -1) {
+            return false;
+        }
+        newIndex = Math.max(0, Math.min(newIndex, elements.size() - 1));
+        if (oldIndex == newIndex) {
+            return true;
+        }
+        elements.remove(oldIndex);
+        elements.add(newIndex, element);
+        if (spatialIndex != null) {
+            spatialIndex.renumber(elements);
+        }
+        changed(element, element.getRotatedBounds());
+        return true;
     }
 
     /**
      * NEW: Clears all elements from the page.
      */
     public void clearElements() {
+        for (SlideElement element : elements) {
+            if (element.getPage() == this) {
+                element.setPage(null);
+            }
+        }
         elements.clear();
+        if (spatialIndex != null) {
+            spatialIndex.clear();
+        }
+        changed(null, null);
+    }
+
+    /**
+     * 返回包含该点的最顶层元素（逻辑坐标），没有则返回 null。
+     */
+    public SlideElement findElementAt(Point p) {
+        return getSpatialIndex().findTopmostAt(p);
+    }
+
+    /**
+     * 返回与矩形区域相交的元素，按 z 序从底到顶排列。
+     */
+    public List<SlideElement> getElementsIn(Rectangle area) {
+        return getSpatialIndex().query(area);
+    }
+
+    // 元素被修改后由元素回调；geometry 表示包围盒可能变化，需要更新空间索引
+    void elementChanged(SlideElement element, Rectangle dirty, boolean geometry) {
+        if (geometry && spatialIndex != null) {
+            spatialIndex.update(element);
+        }
+        changed(element, dirty);
+    }
+
+    /**
+     * 页面的修改版本，页面或其元素每次变化后递增。只在 EDT 上修改。
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 标记整页已修改，用于模型方法无法感知的修改（例如直接改写了背景图片的像素）。
+     */
+    public void markModified() {
+        changed(null, null);
+    }
+
+    public void addChangeListener(SlideChangeListener listener) {
+        if (changeListeners == null) {
+            changeListeners = new CopyOnWriteArrayList<>();
+        }
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(SlideChangeListener listener) {
+        if (changeListeners != null) {
+            changeListeners.remove(listener);
+        }
+    }
+
+    // 递增版本并通知监听器；dirty 为 null 表示整页
+    private void changed(SlideElement element, Rectangle dirty) {
+        version++;
+        if (changeListeners == null || changeListeners.isEmpty()) {
+            return;
+        }
+        SlideChangeEvent event = new SlideChangeEvent(this, element, dirty);
+        for (SlideChangeListener listener : changeListeners) {
+            listener.slideChanged(event);
+        }
+    }
+
+    private SpatialIndex getSpatialIndex() {
+        if (spatialIndex == null) {
+            spatialIndex = new SpatialIndex(elements);
+        }
+        return spatialIndex;
     }
 
     public java.awt.Color getBackgroundColor() {
@@ -63,14 +196,23 @@ public class SlidePage implements Serializable {
 
     public void setBackgroundColor(java.awt.Color backgroundColor) {
         this.backgroundColor = backgroundColor;
+        changed(null, null);
     }
 
     public BufferedImage getBackgroundImage() {
-        return backgroundImage;
+        return backgroundImage != null ? backgroundImage.get() : null;
     }
 
     public void setBackgroundImage(BufferedImage backgroundImage) {
+        setBackgroundImage(LazyImage.of(backgroundImage));
+    }
+
+    /**
+     * 使用幻灯片图片库中的图片（见 ImageStore.intern）作为背景。
+     */
+    public void setBackgroundImage(LazyImage backgroundImage) {
         this.backgroundImage = backgroundImage;
+        changed(null, null);
     }
 
     public BackgroundMode getBackgroundMode() {
@@ -79,6 +221,7 @@ public class SlidePage implements Serializable {
 
     public void setBackgroundMode(BackgroundMode mode) {
         this.backgroundMode = mode;
+        changed(null, null);
     }
 
     public java.awt.Color getGradientStart() {
@@ -87,6 +230,7 @@ public class SlidePage implements Serializable {
 
     public void setGradientStart(java.awt.Color gradientStart) {
         this.gradientStart = gradientStart;
+        changed(null, null);
     }
 
     public java.awt.Color getGradientEnd() {
@@ -95,6 +239,7 @@ public class SlidePage implements Serializable {
 
     public void setGradientEnd(java.awt.Color gradientEnd) {
         this.gradientEnd = gradientEnd;
+        changed(null, null);
     }
 
     /**
@@ -102,11 +247,12 @@ public class SlidePage implements Serializable {
      */
     public void renderBackground(Graphics2D g2d, int width, int height) {
         BackgroundMode mode = getBackgroundMode();
+        BufferedImage backgroundImage = mode == BackgroundMode.IMAGE_TILE ? getBackgroundImage() : null;
         switch (mode) {
             case GRADIENT: {
                 Color start = getGradientStart();
                 Color end = getGradientEnd();
-                GradientPaint gp = new GradientPaint(0, 0, start, 0, height, end);
+                GradientPaint gp = StyleCache.verticalGradient(start, end, height);
                 Paint old = g2d.getPaint();
                 g2d.setPaint(gp);
                 g2d.fillRect(0, 0, width, height);
@@ -114,9 +260,8 @@ public class SlidePage implements Serializable {
                 break;
             }
             case IMAGE_STRETCH: {
-                if (backgroundImage != null) {
-                    g2d.drawImage(backgroundImage, 0, 0, width, height, null);
-                } else {
+                // 拉伸的背景图按显示尺寸选用缩小过的版本
+                if (!ImageMipmaps.draw(g2d, this.backgroundImage, 0, 0, width, height)) {
                     g2d.setColor(getBackgroundColor());
                     g2d.fillRect(0, 0, width, height);
                 }
@@ -146,11 +291,31 @@ public class SlidePage implements Serializable {
         }
     }
 
+    // 二进制 .slide 格式（见 SlideFile）中的背景字段，元素由 SlideFile 逐个写出
+    void writeData(DataOutput out, SlideFile.ImageSink images) throws IOException {
+        SlideFile.writeColor(out, backgroundColor);
+        out.writeByte(backgroundMode == null ? -1 : backgroundMode.ordinal());
+        SlideFile.writeColor(out, gradientStart);
+        SlideFile.writeColor(out, gradientEnd);
+        out.writeInt(backgroundImage != null ? images.add(backgroundImage) : -1);
+    }
+
+    void readData(DataInput in, SlideFile.ImageSource images) throws IOException {
+        backgroundColor = SlideFile.readColor(in);
+        int mode = in.readByte();
+        BackgroundMode[] modes = BackgroundMode.values();
+        backgroundMode = mode >= 0 && mode < modes.length ? modes[mode] : null;
+        gradientStart = SlideFile.readColor(in);
+        gradientEnd = SlideFile.readColor(in);
+        backgroundImage = images.get(in.readInt());
+    }
+
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.defaultWriteObject();
-        if (backgroundImage != null) {
+        BufferedImage image = getBackgroundImage();
+        if (image != null) {
             out.writeBoolean(true);
-            ImageIO.write(backgroundImage, "png", out);
+            ImageIO.write(image, "png", out);
         } else {
             out.writeBoolean(false);
         }
@@ -158,10 +323,13 @@ public class SlidePage implements Serializable {
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
+        for (SlideElement element : elements) {
+            element.setPage(this);
+        }
         boolean hasImage = in.readBoolean();
         if (hasImage) {
             try {
-                backgroundImage = ImageIO.read(in);
+                backgroundImage = LazyImage.of(ImageIO.read(in));
             } catch (IOException e) {
                 e.printStackTrace();
                 backgroundImage = null;
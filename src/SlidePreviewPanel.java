@@ -1,22 +1,32 @@
 import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
 public class SlidePreviewPanel extends JPanel {
     private final PresentationApp app;
     private final JList<SlidePage> previewList;
-    private final DefaultListModel<SlidePage> listModel;
+    private final PageListModel listModel;
+    private final transient ThumbnailCache thumbnails;
+    // 页面修改时只重绘对应的列表项，缩略图缓存根据页面版本判断是否需要重新渲染
+    private final transient SlideChangeListener pageChangeListener = this::pageChanged;
+    // 已注册监听器的页面。只在页面第一次显示时注册，避免为此读取延迟加载的全部页面
+    private final transient Set<SlidePage> listenedPages = Collections.newSetFromMap(new IdentityHashMap<>());
+    // 所有列表项大小相同，由这一项计算，JList 不必为计算大小逐项调用渲染器
+    private final SlidePage prototypePage = new SlidePage();
 
     public SlidePreviewPanel(PresentationApp app) {
         this.app = app;
-        this.listModel = new DefaultListModel<>();
+        this.listModel = new PageListModel();
         this.previewList = new JList<>(listModel);
+        this.thumbnails = new ThumbnailCache(previewList::repaint);
 
         setLayout(new BorderLayout());
         setPreferredSize(new Dimension(200, 0));
@@ -24,6 +34,7 @@ public class SlidePreviewPanel extends JPanel {
 
         previewList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         previewList.setCellRenderer(new SlideThumbnailRenderer());
+        previewList.setPrototypeCellValue(prototypePage);
         previewList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int index = previewList.getSelectedIndex();
@@ -100,30 +111,29 @@ public class SlidePreviewPanel extends JPanel {
             fileChooser.setFileFilter(new FileNameExtensionFilter("图片文件 (*.png, *.jpg, *.jpeg)", "png", "jpg", "jpeg"));
             if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
                 File file = fileChooser.getSelectedFile();
-                try {
-                    BufferedImage image = ImageIO.read(file);
-                    if (image != null) {
-                        page.setBackgroundImage(image);
-                        // 当通过预览面板直接更改背景图片时，自动切换为拉伸模式以立即可见
-                        page.setBackgroundMode(SlidePage.BackgroundMode.IMAGE_STRETCH);
-                        refreshPreviews();
-                        app.repaint();
-                    } else {
-                        JOptionPane.showMessageDialog(this, "无法加载图片。", "错误", JOptionPane.ERROR_MESSAGE);
-                    }
-                } catch (IOException ex) {
-                    ex.printStackTrace();
-                    JOptionPane.showMessageDialog(this, "加载图片失败: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-                }
+                // 在后台解码，按幻灯片尺寸降采样
+                app.importImage(file, "加载背景图片", image -> {
+                    page.setBackgroundImage(app.getSlide().getImageStore().intern(image));
+                    // 当通过预览面板直接更改背景图片时，自动切换为拉伸模式以立即可见
+                    page.setBackgroundMode(SlidePage.BackgroundMode.IMAGE_STRETCH);
+                    refreshPreviews();
+                    app.repaint();
+                }, null);
             }
         }
     }
 
-    public void updateSlideList(java.util.List<SlidePage> pages) {
-        listModel.clear();
-        for (SlidePage page : pages) {
-            listModel.addElement(page);
+    /**
+     * 显示幻灯片的页面列表。列表不复制，页面增删后需再次调用本方法。
+     */
+    public void updateSlideList(List<SlidePage> pages) {
+        for (SlidePage page : listenedPages) {
+            page.removeChangeListener(pageChangeListener);
         }
+        listenedPages.clear();
+        listModel.setPages(pages);
+        previewList.setPrototypeCellValue(prototypePage); // 幻灯片尺寸可能已改变，重新计算列表项大小
+        thumbnails.retainAll(pages);
     }
 
     public void setSelectedPage(int index) {
@@ -135,6 +145,16 @@ public class SlidePreviewPanel extends JPanel {
         previewList.repaint();
     }
 
+    private void pageChanged(SlideChangeEvent event) {
+        int index = listModel.indexOf(event.getPage());
+        if (index != -1) {
+            Rectangle cell = previewList.getCellBounds(index, index);
+            if (cell != null) {
+                previewList.repaint(cell);
+            }
+        }
+    }
+
     private class SlideThumbnailRenderer extends JPanel implements ListCellRenderer<SlidePage> {
         private final JLabel indexLabel;
         private final ImagePanel imagePanel;
@@ -190,39 +210,53 @@ public class SlidePreviewPanel extends JPanel {
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
-            if (page != null) {
-                BufferedImage thumbnail = renderPageToThumbnail(page, getWidth(), getHeight());
-                g.drawImage(thumbnail, 0, 0, null);
+            if (page != null && page != prototypePage) {
+                if (listenedPages.add(page)) {
+                    page.addChangeListener(pageChangeListener);
+                }
+                // 缩略图在后台渲染，尚未就绪时先画旧图（尺寸不同则缩放），从未渲染过则只画底色
+                BufferedImage thumbnail = thumbnails.get(page, getWidth(), getHeight(), app.getSlide().getWidth(),
+                        app.getSlide().getHeight());
+                if (thumbnail != null) {
+                    g.drawImage(thumbnail, 0, 0, getWidth(), getHeight(), null);
+                } else {
+                    g.setColor(page.getBackgroundColor());
+                    g.fillRect(0, 0, getWidth(), getHeight());
+                }
             }
         }
+    }
 
-        private BufferedImage renderPageToThumbnail(SlidePage page, int width, int height) {
-            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2d = image.createGraphics();
-
-            // 开启抗锯齿
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-
-            // 填充背景（支持纯色/渐变/图片）
-            page.renderBackground(g2d, width, height);
+    // 直接引用幻灯片的页面列表，延迟加载的页面只在显示时才读取
+    private static final class PageListModel extends AbstractListModel<SlidePage> {
+        private static final long serialVersionUID = 1L;
 
-            // 计算缩放比例
-            int slideWidth = app.getSlide().getWidth();
-            int slideHeight = app.getSlide().getHeight();
+        private transient List<SlidePage> pages = Collections.emptyList();
 
-            double scaleX = (double) width / slideWidth;
-            double scaleY = (double) height / slideHeight;
-            double scale = Math.min(scaleX, scaleY);
+        void setPages(List<SlidePage> pages) {
+            int oldSize = this.pages.size();
+            this.pages = Collections.emptyList();
+            if (oldSize > 0) {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+            this.pages = pages;
+            if (!pages.isEmpty()) {
+                fireIntervalAdded(this, 0, pages.size() - 1);
+            }
+        }
 
-            g2d.scale(scale, scale);
+        int indexOf(SlidePage page) {
+            return pages.indexOf(page);
+        }
 
-            for (SlideElement element : page.getElements()) {
-                element.draw(g2d);
-            }
+        @Override
+        public int getSize() {
+            return pages.size();
+        }
 
-            g2d.dispose();
-            return image;
+        @Override
+        public SlidePage getElementAt(int index) {
+            return pages.get(index);
         }
     }
 }
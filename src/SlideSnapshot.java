@@ -0,0 +1,119 @@
+// 文件名： SlideSnapshot.java
+// 功能： 幻灯片某一时刻的只读快照，交给后台线程写出（自动保存）
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 幻灯片在某一时刻的内容，创建后不再改变，可以在 EDT 之外写出。
+ * 已读取的页面保存为编码后的页面数据（PageData），延迟加载的幻灯片中尚未读取的页面只记录所在的块，
+ * 写出时再读取。
+ * <p>
+ * 页面数据按页面版本缓存在 Recorder 中，未修改的页面在相邻的快照之间共用同一份数据，
+ * 因此在 EDT 上创建快照只需编码修改过的页面，大幅幻灯片也可以每隔几秒创建一次。
+ */
+final class SlideSnapshot {
+    final int width;
+    final int height;
+    final int currentPage;
+    final List<Object> pages; // PageData 或 SlideFile.Chunk
+    final LazyPageList lazy; // 有尚未读取的页面时从中读取
+    final int epoch;
+
+    private SlideSnapshot(Slide slide, List<Object> pages, LazyPageList lazy, int epoch) {
+        this.width = slide.getWidth();
+        this.height = slide.getHeight();
+        this.currentPage = slide.getCurrentPageIndex();
+        this.pages = Collections.unmodifiableList(pages);
+        this.lazy = lazy;
+        this.epoch = epoch;
+    }
+
+    /**
+     * 内容是否与 other 相同：页面数据逐项是同一对象即可，不比较字节。
+     */
+    boolean sameContent(SlideSnapshot other) {
+        if (other == null || width != other.width || height != other.height || currentPage != other.currentPage
+                || lazy != other.lazy || epoch != other.epoch || pages.size() != other.pages.size()) {
+            return false;
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            if (pages.get(i) != other.pages.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 编码后的页面。页面数据中的图片编号是 Recorder 分配的编号，images 和 ids 为页面引用的图片及其编号。
+     */
+    static final class PageData {
+        final byte[] data;
+        final LazyImage[] images;
+        final int[] ids;
+        final long version;
+
+        private PageData(byte[] data, Map<LazyImage, Integer> referenced, long version) {
+            this.data = data;
+            this.images = referenced.keySet().toArray(new LazyImage[0]);
+            this.ids = referenced.values().stream().mapToInt(Integer::intValue).toArray();
+            this.version = version;
+        }
+    }
+
+    /**
+     * 一个幻灯片的快照记录器：缓存各页面最近一次编码的结果，并为图片分配在快照之间不变的编号。
+     * take 只在 EDT 调用；encode 也可以在写出线程中对临时读取的页面调用。
+     */
+    static final class Recorder {
+        private final Map<LazyImage, Integer> imageIds = new WeakHashMap<>(); // LazyImage 按对象标识比较
+        private int nextId;
+        private Map<SlidePage, PageData> cache = new IdentityHashMap<>();
+
+        SlideSnapshot take(Slide slide) throws IOException {
+            List<Object> slots = new ArrayList<>();
+            List<SlidePage> livePages = slide.getAllPages();
+            LazyPageList lazy = livePages instanceof LazyPageList list ? list : null;
+            int epoch = 0;
+            if (lazy != null) {
+                epoch = lazy.snapshot(slots);
+            } else {
+                slots.addAll(livePages);
+            }
+            Map<SlidePage, PageData> next = new IdentityHashMap<>();
+            for (int i = 0; i < slots.size(); i++) {
+                if (slots.get(i) instanceof SlidePage page) {
+                    PageData data = cache.get(page);
+                    if (data == null || data.version != page.getVersion()) {
+                        data = encode(page);
+                    }
+                    next.put(page, data);
+                    slots.set(i, data);
+                }
+            }
+            cache = next; // 已删除的页面随之丢弃
+            return new SlideSnapshot(slide, slots, lazy, epoch);
+        }
+
+        PageData encode(SlidePage page) throws IOException {
+            Map<LazyImage, Integer> referenced = new LinkedHashMap<>();
+            long version = page.getVersion();
+            byte[] data = SlideFile.writePage(page, image -> {
+                int id = idOf(image);
+                referenced.put(image, id);
+                return id;
+            });
+            return new PageData(data, referenced, version);
+        }
+
+        private synchronized int idOf(LazyImage image) {
+            return imageIds.computeIfAbsent(image, key -> nextId++);
+        }
+    }
+}
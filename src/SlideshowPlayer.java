@@ -8,27 +8,37 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 // 该播放器以JDialog为基础，实现全屏幻灯片放映功能
 public class SlideshowPlayer extends JDialog {
+    // 以 -Dpowerdot.transition.trace=true 启动时，每次翻页动画结束后把帧统计打印到标准错误输出
+    private static final boolean TRACE_TRANSITIONS = Boolean.getBoolean("powerdot.transition.trace");
+
     // 底层幻灯片数据
     private final Slide slide;
     private int currentIndex;
     private final PlayerPanel playerPanel;
 
-    private Timer animationTimer;// 动画计时器
+    private final transient TransitionEngine transitionEngine;// 翻页动画引擎
 
     public enum Transition {
         FADE, SLIDE, ZOOM, NONE
     } // 动画枚举
 
     private final Transition transitionEffect;// 当前动画效果
-    private boolean isAnimating = false; // 是否正在动画中
+    private volatile boolean isAnimating = false; // 是否正在动画中
 
-    private BufferedImage previousPageImage; // 上一页图像
-    private BufferedImage currentPageImage;// 当前页图像
-    private long animationStartTime; // 动画开始时间
+    private volatile AcceleratedImage previousPageImage; // 上一页图像
+    private volatile AcceleratedImage currentPageImage;// 当前页图像
     private final int ANIMATION_DURATION = 500; // 动画持续时间（毫秒）
 
     private enum Direction {
@@ -37,6 +47,8 @@ public class SlideshowPlayer extends JDialog {
 
     private Direction animationDirection;// 当前动画方向
 
+    private final transient PageImageCache pageImages = new PageImageCache(); // 预渲染的页面图像
+
     public SlideshowPlayer(JFrame owner, Slide slide, int startIndex, Transition transition) {
         super(owner, "幻灯片放映", true);
         this.slide = slide;
@@ -50,10 +62,13 @@ public class SlideshowPlayer extends JDialog {
         setContentPane(playerPanel);
 
         setupInputHandling();
+        transitionEngine = new TransitionEngine(this, playerPanel);
 
         // 改为手动全屏，避免 GraphicsDevice.setFullScreenWindow 可能导致的 NPE
         setSize(Toolkit.getDefaultToolkit().getScreenSize());
         setLocation(0, 0);
+
+        prefetchAround(currentIndex);
     }
 
     // 设置输入处理，包括鼠标点击和键盘按键
@@ -140,6 +155,7 @@ public class SlideshowPlayer extends JDialog {
 
         if (transitionEffect == Transition.NONE) {
             currentIndex = nextIndex;
+            prefetchAround(currentIndex);
             repaint();
             return;
         }
@@ -147,52 +163,229 @@ public class SlideshowPlayer extends JDialog {
         isAnimating = true;
         this.animationDirection = direction;
 
-        previousPageImage = renderPageToImage(slide.getAllPages().get(currentIndex));
-        currentPageImage = renderPageToImage(slide.getAllPages().get(nextIndex));
+        // 两页通常已由后台预渲染好，这里只取出图像
+        previousPageImage = new AcceleratedImage(getPageImage(currentIndex));
+        currentPageImage = new AcceleratedImage(getPageImage(nextIndex));
         currentIndex = nextIndex;
-
-        animationStartTime = System.currentTimeMillis();
-        animationTimer = new Timer(16, e -> {
-            long elapsedTime = System.currentTimeMillis() - animationStartTime;
-            if (elapsedTime >= ANIMATION_DURATION) {
-                stopAnimation();
-            } else {
-                playerPanel.repaint();
+        prefetchAround(currentIndex);
+
+        // 引擎线程直接绘制整个窗口：先铺黑底，再平移到放映面板的位置
+        Point panelOrigin = SwingUtilities.convertPoint(playerPanel, 0, 0, this);
+        int windowWidth = getWidth();
+        int windowHeight = getHeight();
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        transitionEngine.start(ANIMATION_DURATION * 1_000_000L, (g, progress) -> {
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, windowWidth, windowHeight);
+            g.translate(panelOrigin.x, panelOrigin.y);
+            playerPanel.renderTransition(g, progress, gc);
+        }, () -> {
+            if (TRACE_TRANSITIONS && transitionEngine.getLastStats() != null) {
+                System.err.println("翻页动画: " + transitionEngine.getLastStats());
             }
+            stopAnimation();
         });
-        animationTimer.start();
     }
 
     private void stopAnimation() {
-        if (animationTimer != null) {
-            animationTimer.stop();
-        }
+        transitionEngine.cancel();
         isAnimating = false;
-        previousPageImage = null;
+        if (previousPageImage != null) {
+            previousPageImage.flush();
+            previousPageImage = null;
+        }
+        if (currentPageImage != null) {
+            currentPageImage.flush();
+            currentPageImage = null;
+        }
         playerPanel.repaint();
     }
 
-    private BufferedImage renderPageToImage(SlidePage page) {
-        final int designWidth = slide.getWidth();
-        final int designHeight = slide.getHeight();
-        BufferedImage image = new BufferedImage(designWidth, designHeight, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = image.createGraphics();
+    // 按屏幕上实际显示的像素尺寸渲染页面，显示时不再缩放
+    private static BufferedImage renderPageToImage(SlidePage page, int designWidth, int designHeight,
+            int pixelWidth, int pixelHeight) {
+        return PageRenderer.render(page, designWidth, designHeight, pixelWidth, pixelHeight,
+                BufferedImage.TYPE_INT_RGB);
+    }
+
+    // 页面在屏幕上的显示区域（逻辑坐标），按设计尺寸等比缩放并居中
+    private Rectangle getPageBounds() {
+        int panelWidth = playerPanel.getWidth() > 0 ? playerPanel.getWidth() : getWidth();
+        int panelHeight = playerPanel.getHeight() > 0 ? playerPanel.getHeight() : getHeight();
+        final double designWidth = slide.getWidth();
+        final double designHeight = slide.getHeight();
+        double scale = Math.min(panelWidth / designWidth, panelHeight / designHeight);
+        int scaledWidth = Math.max(1, (int) (designWidth * scale));
+        int scaledHeight = Math.max(1, (int) (designHeight * scale));
+        int xOffset = (panelWidth - scaledWidth) / 2;
+        int yOffset = (panelHeight - scaledHeight) / 2;
+        return new Rectangle(xOffset, yOffset, scaledWidth, scaledHeight);
+    }
+
+    // 显示区域对应的设备像素尺寸（考虑 HiDPI 缩放）
+    private Dimension getPagePixelSize() {
+        Rectangle bounds = getPageBounds();
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        double deviceScaleX = gc != null ? gc.getDefaultTransform().getScaleX() : 1.0;
+        double deviceScaleY = gc != null ? gc.getDefaultTransform().getScaleY() : 1.0;
+        return new Dimension((int) Math.ceil(bounds.width * deviceScaleX),
+                (int) Math.ceil(bounds.height * deviceScaleY));
+    }
 
-        // Draw background (color / gradient / image)
-        page.renderBackground(g2d, designWidth, designHeight);
+    private BufferedImage getPageImage(int index) {
+        return pageImages.get(slide.getAllPages().get(index), getPagePixelSize());
+    }
 
-        for (SlideElement element : page.getElements()) {
-            element.draw(g2d);
+    // 当前页优先，其次下一页、上一页，在后台线程中预渲染
+    private void prefetchAround(int index) {
+        int total = slide.getAllPages().size();
+        Dimension size = getPagePixelSize();
+        for (int i : new int[] { index, index + 1, index - 1 }) {
+            if (i >= 0 && i < total) {
+                pageImages.prefetch(slide.getAllPages().get(i), size);
+            }
         }
-        g2d.dispose();
-        return image;
     }
 
     private void exitSlideshow() {
         stopAnimation();
+        pageImages.shutdown();
         dispose();
     }
 
+    /**
+     * 放映用的页面图像缓存，按页面对象、页面版本和像素尺寸判断是否可用。
+     * 渲染在单个后台线程上进行，只保留最近使用的几页。除渲染外所有方法只在 EDT 上调用。
+     */
+    private final class PageImageCache {
+        private static final int CAPACITY = 4; // 上一页、当前页、下一页，外加翻页时刚离开的一页
+
+        private final ExecutorService renderer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "slideshow-prerender");
+            t.setDaemon(true);
+            return t;
+        });
+        private final Map<SlidePage, PendingImage> images = new LinkedHashMap<>(8, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SlidePage, PendingImage> eldest) {
+                return size() > CAPACITY;
+            }
+        };
+
+        void prefetch(SlidePage page, Dimension size) {
+            lookup(page, size);
+        }
+
+        // 取出页面图像；尚在渲染中则等待其完成。后台渲染失败时在当前线程重新渲染，仍然失败则返回空白画面
+        BufferedImage get(SlidePage page, Dimension size) {
+            PendingImage pending = lookup(page, size);
+            try {
+                return pending.image.join();
+            } catch (CompletionException | CancellationException ex) {
+                images.remove(page, pending);
+                try {
+                    return renderPageToImage(page, slide.getWidth(), slide.getHeight(), size.width, size.height);
+                } catch (RuntimeException retry) {
+                    retry.printStackTrace();
+                    return new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+                }
+            }
+        }
+
+        private PendingImage lookup(SlidePage page, Dimension size) {
+            PendingImage pending = images.get(page);
+            if (pending == null || !pending.matches(page.getVersion(), size)) {
+                PendingImage created = new PendingImage(page.getVersion(), size);
+                int designWidth = slide.getWidth();
+                int designHeight = slide.getHeight();
+                created.image.completeAsync(() -> renderPageToImage(page, designWidth, designHeight, size.width,
+                        size.height), renderer);
+                // 失败的结果不留在缓存中，下次取用时重新渲染
+                created.image.whenComplete((image, ex) -> {
+                    if (ex != null) {
+                        ex.printStackTrace();
+                        SwingUtilities.invokeLater(() -> images.remove(page, created));
+                    }
+                });
+                images.put(page, created);
+                pending = created;
+            }
+            return pending;
+        }
+
+        void shutdown() {
+            renderer.shutdownNow();
+            images.clear();
+        }
+    }
+
+    /**
+     * 已按显示尺寸渲染好的页面图像及其显存副本。显存副本在动画线程上逐帧校验，
+     * 内容丢失时从原图恢复，无法加速时直接使用原图。
+     */
+    private static final class AcceleratedImage {
+        final BufferedImage source;
+        private VolatileImage accelerated;
+
+        AcceleratedImage(BufferedImage source) {
+            this.source = source;
+        }
+
+        Image validated(GraphicsConfiguration gc) {
+            if (gc == null) {
+                return source;
+            }
+            for (int attempt = 0; attempt < 3; attempt++) {
+                if (accelerated == null) {
+                    accelerated = gc.createCompatibleVolatileImage(source.getWidth(), source.getHeight());
+                    copySource();
+                }
+                int status = accelerated.validate(gc);
+                if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                    accelerated.flush();
+                    accelerated = null;
+                    continue;
+                }
+                if (status == VolatileImage.IMAGE_RESTORED) {
+                    copySource();
+                }
+                if (!accelerated.contentsLost()) {
+                    return accelerated;
+                }
+            }
+            return source;
+        }
+
+        private void copySource() {
+            Graphics2D g = accelerated.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(source, 0, 0, null);
+            g.dispose();
+        }
+
+        void flush() {
+            if (accelerated != null) {
+                accelerated.flush();
+                accelerated = null;
+            }
+        }
+    }
+
+    private static final class PendingImage {
+        final long version;
+        final Dimension size;
+        final CompletableFuture<BufferedImage> image = new CompletableFuture<>();
+
+        PendingImage(long version, Dimension size) {
+            this.version = version;
+            this.size = size;
+        }
+
+        boolean matches(long version, Dimension size) {
+            return this.version == version && this.size.equals(size);
+        }
+    }
+
     private class PlayerPanel extends JPanel {
         public PlayerPanel() {
             setBackground(Color.BLACK);
@@ -208,103 +401,96 @@ public class SlideshowPlayer extends JDialog {
             Graphics2D g2d = (Graphics2D) g.create();
 
             if (isAnimating) {
-                long elapsedTime = System.currentTimeMillis() - animationStartTime;
-                float progress = Math.min(1.0f, (float) elapsedTime / ANIMATION_DURATION);
-
-                switch (transitionEffect) {
-                    case FADE:
-                        drawFade(g2d, progress);
-                        break;
-                    case SLIDE:
-                        drawSlide(g2d, progress);
-                        break;
-                    case ZOOM:
-                        drawZoom(g2d, progress);
-                        break;
-                    case NONE:
-                        break;
-                }
+                // 只有无法主动渲染时才会走到这里，进度由动画引擎提供
+                renderTransition(g2d, transitionEngine.getProgress(), null);
             } else {
-                SlidePage currentPage = slide.getAllPages().get(currentIndex);
-                BufferedImage imageToDraw = renderPageToImage(currentPage);
-                drawScaledAndCentered(g2d, imageToDraw);
+                drawScaledAndCentered(g2d, getPageImage(currentIndex));
             }
             g2d.dispose();
         }
 
-        private void drawScaledAndCentered(Graphics2D g2d, BufferedImage image) {
-            final double designWidth = image.getWidth();
-            final double designHeight = image.getHeight();
-            double scale = Math.min(getWidth() / designWidth, getHeight() / designHeight);
-            int scaledWidth = (int) (designWidth * scale);
-            int scaledHeight = (int) (designHeight * scale);
-            int xOffset = (getWidth() - scaledWidth) / 2;
-            int yOffset = (getHeight() - scaledHeight) / 2;
-            g2d.drawImage(image, xOffset, yOffset, scaledWidth, scaledHeight, null);
+        // 绘制一帧翻页动画；gc 不为 null 时在动画线程上使用显存中的图像
+        void renderTransition(Graphics2D g2d, float progress, GraphicsConfiguration gc) {
+            AcceleratedImage previousImage = previousPageImage;
+            AcceleratedImage currentImage = currentPageImage;
+            if (previousImage == null || currentImage == null) {
+                return;
+            }
+            Image previous = previousImage.validated(gc);
+            Image current = currentImage.validated(gc);
+
+            switch (transitionEffect) {
+                case FADE:
+                    drawFade(g2d, progress, previous, current);
+                    break;
+                case SLIDE:
+                    drawSlide(g2d, progress, previous, current);
+                    break;
+                case ZOOM:
+                    drawZoom(g2d, progress, previous, current);
+                    break;
+                case NONE:
+                    break;
+            }
         }
 
-        private void drawFade(Graphics2D g2d, float progress) {
+        // 图像已按显示尺寸渲染，这里是 1:1 的设备像素拷贝
+        private void drawScaledAndCentered(Graphics2D g2d, Image image) {
+            Rectangle bounds = getPageBounds();
+            g2d.drawImage(image, bounds.x, bounds.y, bounds.width, bounds.height, null);
+        }
+
+        private void drawFade(Graphics2D g2d, float progress, Image previous, Image current) {
             if (animationDirection == Direction.FORWARD) {
-                g2d.setComposite(AlphaComposite.SrcOver.derive(1.0f - progress));
-                drawScaledAndCentered(g2d, previousPageImage);
-                g2d.setComposite(AlphaComposite.SrcOver.derive(progress));
-                drawScaledAndCentered(g2d, currentPageImage);
+                g2d.setComposite(StyleCache.alpha(1.0f - progress));
+                drawScaledAndCentered(g2d, previous);
+                g2d.setComposite(StyleCache.alpha(progress));
+                drawScaledAndCentered(g2d, current);
             } else {
-                drawScaledAndCentered(g2d, currentPageImage);
-                g2d.setComposite(AlphaComposite.SrcOver.derive(1.0f - progress));
-                drawScaledAndCentered(g2d, previousPageImage);
+                drawScaledAndCentered(g2d, current);
+                g2d.setComposite(StyleCache.alpha(1.0f - progress));
+                drawScaledAndCentered(g2d, previous);
             }
         }
 
-        private void drawSlide(Graphics2D g2d, float progress) {
-            Rectangle bounds = getScaledBounds(previousPageImage);
+        private void drawSlide(Graphics2D g2d, float progress, Image previous, Image current) {
+            Rectangle bounds = getPageBounds();
 
             if (animationDirection == Direction.FORWARD) {
                 int oldPageOffset = (int) (-bounds.width * progress);
-                g2d.drawImage(previousPageImage, bounds.x + oldPageOffset, bounds.y, bounds.width, bounds.height, null);
+                g2d.drawImage(previous, bounds.x + oldPageOffset, bounds.y, bounds.width, bounds.height, null);
                 int newPageOffset = (int) (bounds.width * (1.0f - progress));
-                g2d.drawImage(currentPageImage, bounds.x + newPageOffset, bounds.y, bounds.width, bounds.height, null);
+                g2d.drawImage(current, bounds.x + newPageOffset, bounds.y, bounds.width, bounds.height, null);
             } else {
                 int oldPageOffset = (int) (bounds.width * progress);
-                g2d.drawImage(previousPageImage, bounds.x + oldPageOffset, bounds.y, bounds.width, bounds.height, null);
+                g2d.drawImage(previous, bounds.x + oldPageOffset, bounds.y, bounds.width, bounds.height, null);
                 int newPageOffset = (int) (-bounds.width * (1.0f - progress));
-                g2d.drawImage(currentPageImage, bounds.x + newPageOffset, bounds.y, bounds.width, bounds.height, null);
+                g2d.drawImage(current, bounds.x + newPageOffset, bounds.y, bounds.width, bounds.height, null);
             }
         }
 
-        private void drawZoom(Graphics2D g2d, float progress) {
+        private void drawZoom(Graphics2D g2d, float progress, Image previous, Image current) {
             if (animationDirection == Direction.FORWARD) {
-                drawScaledAndCentered(g2d, previousPageImage);
-                Rectangle bounds = getScaledBounds(currentPageImage);
+                drawScaledAndCentered(g2d, previous);
+                Rectangle bounds = getPageBounds();
                 float scale = 0.5f + (0.5f * progress);
                 int newWidth = (int) (bounds.width * scale);
                 int newHeight = (int) (bounds.height * scale);
                 int newX = bounds.x + (bounds.width - newWidth) / 2;
                 int newY = bounds.y + (bounds.height - newHeight) / 2;
-                g2d.setComposite(AlphaComposite.SrcOver.derive(progress));
-                g2d.drawImage(currentPageImage, newX, newY, newWidth, newHeight, null);
+                g2d.setComposite(StyleCache.alpha(progress));
+                g2d.drawImage(current, newX, newY, newWidth, newHeight, null);
             } else {
-                drawScaledAndCentered(g2d, currentPageImage);
-                Rectangle bounds = getScaledBounds(previousPageImage);
+                drawScaledAndCentered(g2d, current);
+                Rectangle bounds = getPageBounds();
                 float scale = 1.0f - (0.5f * progress);
                 int newWidth = (int) (bounds.width * scale);
                 int newHeight = (int) (bounds.height * scale);
                 int newX = bounds.x + (bounds.width - newWidth) / 2;
                 int newY = bounds.y + (bounds.height - newHeight) / 2;
-                g2d.setComposite(AlphaComposite.SrcOver.derive(1.0f - progress));
-                g2d.drawImage(previousPageImage, newX, newY, newWidth, newHeight, null);
+                g2d.setComposite(StyleCache.alpha(1.0f - progress));
+                g2d.drawImage(previous, newX, newY, newWidth, newHeight, null);
             }
         }
-
-        private Rectangle getScaledBounds(BufferedImage image) {
-            final double designWidth = image.getWidth();
-            final double designHeight = image.getHeight();
-            double scale = Math.min(getWidth() / designWidth, getHeight() / designHeight);
-            int scaledWidth = (int) (designWidth * scale);
-            int scaledHeight = (int) (designHeight * scale);
-            int xOffset = (getWidth() - scaledWidth) / 2;
-            int yOffset = (getHeight() - scaledHeight) / 2;
-            return new Rectangle(xOffset, yOffset, scaledWidth, scaledHeight);
-        }
     }
 }
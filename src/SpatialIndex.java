@@ -0,0 +1,196 @@
+// 文件名： SpatialIndex.java
+// 功能： 页面元素的均匀网格空间索引，支持按 z 序的点查询和矩形查询
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以元素旋转后的包围盒为键的均匀网格索引。
+ * 每个元素登记在它覆盖的所有网格中，覆盖网格过多的大元素单独存放，
+ * 查询时只扫描命中网格内的元素和大元素列表，不必检查页面上的全部元素。
+ * z 序由 SlidePage 维护：追加元素时递增，插入或重排时整体重编号。
+ * <p>
+ * 网格内的候选元素和大元素列表都是线性扫描的：元素分布均匀时查询只涉及少量元素，
+ * 但所有元素挤在同一网格或都是大元素时，最坏情况仍为 O(n)。幻灯片页面尺寸有限、元素不多，
+ * 均匀网格比平衡树更简单，也更容易在元素移动时保持同步。
+ */
+public final class SpatialIndex {
+    private static final int CELL_SIZE = 128; // 网格边长（逻辑像素）
+    private static final int MAX_CELLS_PER_ELEMENT = 64; // 超过则视为大元素
+    private static final int HIT_SLOP = 2; // contains() 以整数旋转中心和截断取整计算，会略超出精确包围盒
+
+    private final Map<Long, List<SlideElement>> cells = new HashMap<>();
+    private final List<SlideElement> oversized = new ArrayList<>();
+    private final Map<SlideElement, Rectangle> indexedBounds = new IdentityHashMap<>();
+    private final Map<SlideElement, Integer> zOrder = new IdentityHashMap<>();
+    private int nextZ = 0;
+
+    public SpatialIndex(List<SlideElement> elements) {
+        for (SlideElement element : elements) {
+            append(element);
+        }
+    }
+
+    // 新元素位于最顶层
+    public void append(SlideElement element) {
+        zOrder.put(element, nextZ++);
+        insert(element);
+    }
+
+    public void remove(SlideElement element) {
+        zOrder.remove(element);
+        Rectangle bounds = indexedBounds.remove(element);
+        if (bounds != null) {
+            unregister(element, bounds);
+        }
+    }
+
+    public void clear() {
+        cells.clear();
+        oversized.clear();
+        indexedBounds.clear();
+        zOrder.clear();
+        nextZ = 0;
+    }
+
+    // 元素几何变化后重新登记
+    public void update(SlideElement element) {
+        Rectangle old = indexedBounds.get(element);
+        if (old == null) {
+            return;
+        }
+        Rectangle bounds = indexBoundsOf(element);
+        if (old.equals(bounds)) {
+            return;
+        }
+        unregister(element, old);
+        register(element, bounds);
+    }
+
+    // 插入到中间或重排后，按页面列表重新编号 z 序
+    public void renumber(List<SlideElement> elements) {
+        zOrder.clear();
+        nextZ = 0;
+        for (SlideElement element : elements) {
+            zOrder.put(element, nextZ++);
+        }
+    }
+
+    /**
+     * 返回包含该点的最顶层元素，没有则返回 null。
+     */
+    public SlideElement findTopmostAt(Point p) {
+        SlideElement best = null;
+        int bestZ = Integer.MIN_VALUE;
+        List<SlideElement> cell = cells.get(cellKey(Math.floorDiv(p.x, CELL_SIZE), Math.floorDiv(p.y, CELL_SIZE)));
+        if (cell != null) {
+            for (SlideElement element : cell) {
+                int z = zOrder.get(element);
+                if (z > bestZ && indexedBounds.get(element).contains(p) && element.contains(p)) {
+                    best = element;
+                    bestZ = z;
+                }
+            }
+        }
+        for (SlideElement element : oversized) {
+            int z = zOrder.get(element);
+            if (z > bestZ && indexedBounds.get(element).contains(p) && element.contains(p)) {
+                best = element;
+                bestZ = z;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 返回包围盒与矩形相交的元素，按 z 序从底到顶排列。
+     */
+    public List<SlideElement> query(Rectangle area) {
+        Map<SlideElement, Boolean> found = new IdentityHashMap<>();
+        int minCellX = Math.floorDiv(area.x, CELL_SIZE);
+        int minCellY = Math.floorDiv(area.y, CELL_SIZE);
+        int maxCellX = Math.floorDiv(area.x + area.width, CELL_SIZE);
+        int maxCellY = Math.floorDiv(area.y + area.height, CELL_SIZE);
+        for (int cx = minCellX; cx <= maxCellX; cx++) {
+            for (int cy = minCellY; cy <= maxCellY; cy++) {
+                List<SlideElement> cell = cells.get(cellKey(cx, cy));
+                if (cell == null) {
+                    continue;
+                }
+                for (SlideElement element : cell) {
+                    if (indexedBounds.get(element).intersects(area)) {
+                        found.put(element, Boolean.TRUE);
+                    }
+                }
+            }
+        }
+        for (SlideElement element : oversized) {
+            if (indexedBounds.get(element).intersects(area)) {
+                found.put(element, Boolean.TRUE);
+            }
+        }
+        List<SlideElement> result = new ArrayList<>(found.keySet());
+        result.sort((a, b) -> Integer.compare(zOrder.get(a), zOrder.get(b)));
+        return result;
+    }
+
+    private void insert(SlideElement element) {
+        register(element, indexBoundsOf(element));
+    }
+
+    private static Rectangle indexBoundsOf(SlideElement element) {
+        Rectangle bounds = element.getRotatedBounds();
+        bounds.grow(HIT_SLOP, HIT_SLOP);
+        return bounds;
+    }
+
+    private void register(SlideElement element, Rectangle bounds) {
+        indexedBounds.put(element, bounds);
+        if (isOversized(bounds)) {
+            oversized.add(element);
+            return;
+        }
+        int maxCellX = Math.floorDiv(bounds.x + bounds.width, CELL_SIZE);
+        int maxCellY = Math.floorDiv(bounds.y + bounds.height, CELL_SIZE);
+        for (int cx = Math.floorDiv(bounds.x, CELL_SIZE); cx <= maxCellX; cx++) {
+            for (int cy = Math.floorDiv(bounds.y, CELL_SIZE); cy <= maxCellY; cy++) {
+                cells.computeIfAbsent(cellKey(cx, cy), k -> new ArrayList<>(4)).add(element);
+            }
+        }
+    }
+
+    private void unregister(SlideElement element, Rectangle bounds) {
+        if (isOversized(bounds)) {
+            oversized.remove(element);
+            return;
+        }
+        int maxCellX = Math.floorDiv(bounds.x + bounds.width, CELL_SIZE);
+        int maxCellY = Math.floorDiv(bounds.y + bounds.height, CELL_SIZE);
+        for (int cx = Math.floorDiv(bounds.x, CELL_SIZE); cx <= maxCellX; cx++) {
+            for (int cy = Math.floorDiv(bounds.y, CELL_SIZE); cy <= maxCellY; cy++) {
+                Long key = cellKey(cx, cy);
+                List<SlideElement> cell = cells.get(key);
+                if (cell != null) {
+                    cell.remove(element);
+                    if (cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isOversized(Rectangle bounds) {
+        long cellsX = Math.floorDiv(bounds.x + bounds.width, CELL_SIZE) - Math.floorDiv(bounds.x, CELL_SIZE) + 1L;
+        long cellsY = Math.floorDiv(bounds.y + bounds.height, CELL_SIZE) - Math.floorDiv(bounds.y, CELL_SIZE) + 1L;
+        return cellsX * cellsY > MAX_CELLS_PER_ELEMENT;
+    }
+
+    private static Long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+}
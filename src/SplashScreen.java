@@ -1,11 +1,10 @@
 import javax.swing.*;
 import java.awt.*;
 
+// 启动画面：启动准备工作完成后由 Startup 关闭，不再固定等待
 public class SplashScreen extends JWindow {
-    private int duration;
 
-    public SplashScreen(int duration) {
-        this.duration = duration;
+    public SplashScreen() {
     }
 
     public void showSplash() {
@@ -32,13 +31,7 @@ public class SplashScreen extends JWindow {
         content.setBorder(BorderFactory.createLineBorder(borderColor, 2));
 
         setVisible(true);
-
-        try {
-            Thread.sleep(duration);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        setVisible(false);
+        // 随后 EDT 要构建主窗口，等不到正常的重绘，立即绘制一次
+        content.paintImmediately(content.getBounds());
     }
 }
@@ -0,0 +1,174 @@
+// 文件名： Startup.java
+// 功能： 启动流水线：字体枚举、资源预热、打开命令行指定的文件与界面构建并行进行，完成后关闭启动画面
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+/**
+ * 程序启动过程。begin 在主线程调用，立即在后台线程上开始耗时的准备工作：
+ * <ul>
+ * <li>枚举系统字体（字体很多时需要数秒）；</li>
+ * <li>预热文本渲染和图片编解码：加载常用字体的字形和 ImageIO 插件；</li>
+ * <li>查找上次异常退出留下的恢复文件；</li>
+ * <li>打开命令行指定的幻灯片文件。</li>
+ * </ul>
+ * 与此同时 EDT 显示启动画面并构建主窗口。全部完成后 whenReady 的操作在 EDT 上执行，随后关闭启动画面。
+ * <p>
+ * 各阶段的耗时记录在日志中，以 -Dpowerdot.startup.trace=true 启动时打印到标准错误输出。
+ */
+public final class Startup {
+    private static final boolean TRACE = Boolean.getBoolean("powerdot.startup.trace");
+    // 预热时加载的字体，与新建文本和教程中使用的字体一致
+    private static final String[] WARM_FONTS = { "微软雅黑", "宋体", "Arial", Font.SANS_SERIF };
+
+    private final long origin = System.nanoTime();
+    private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+    private final ExecutorService executor;
+    private final File initialFile;
+    private final CompletableFuture<String[]> fontFamilies;
+    private final CompletableFuture<Void> resources;
+    private final CompletableFuture<List<AutosaveService.Recovery>> recoveries;
+    private final CompletableFuture<Slide> initialSlide;
+    private SplashScreen splash;
+
+    private Startup(String[] args) {
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(4, r -> {
+            Thread thread = new Thread(r, "startup-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        initialFile = args.length > 0 ? new File(args[0]) : null;
+        long fontStart = System.nanoTime();
+        fontFamilies = FontCatalog.families();
+        fontFamilies.whenComplete((names, ex) -> record("枚举字体", fontStart));
+        resources = submit("预热资源", () -> {
+            warmUp();
+            return null;
+        });
+        recoveries = submit("查找恢复文件",
+                () -> AutosaveService.findRecoveries(AutosaveService.defaultDirectory()));
+        initialSlide = initialFile == null ? CompletableFuture.completedFuture(null) : submit("打开文件", () -> {
+            try {
+                return SlideFile.open(initialFile);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex.getMessage(), ex);
+            }
+        });
+    }
+
+    /**
+     * 开始启动：后台准备工作立即开始。args[0] 为可选的要打开的 .slide 文件。
+     */
+    public static Startup begin(String[] args) {
+        return new Startup(args);
+    }
+
+    /**
+     * 在 EDT 上显示启动画面并立即绘制，之后 EDT 即使忙于构建界面，启动画面也已可见。
+     */
+    public void showSplash() {
+        splash = new SplashScreen();
+        splash.showSplash();
+        record("启动画面", origin);
+    }
+
+    /**
+     * 记录一个从 start（System.nanoTime）开始、到现在结束的阶段。
+     */
+    public void record(String phase, long start) {
+        long end = System.nanoTime();
+        log.add(String.format("%6d ms %6d ms  %-12s [%s]", (start - origin) / 1_000_000, (end - start) / 1_000_000,
+                phase, Thread.currentThread().getName()));
+    }
+
+    /**
+     * 系统字体名称，按字母顺序排列。
+     */
+    public CompletableFuture<String[]> getFontFamilies() {
+        return fontFamilies;
+    }
+
+    public CompletableFuture<List<AutosaveService.Recovery>> getRecoveries() {
+        return recoveries;
+    }
+
+    /**
+     * 命令行指定的文件，没有指定时为 null。
+     */
+    public File getInitialFile() {
+        return initialFile;
+    }
+
+    /**
+     * 打开的命令行指定文件；没有指定时结果为 null，打开失败时异常完成。
+     */
+    public CompletableFuture<Slide> getInitialSlide() {
+        return initialSlide;
+    }
+
+    /**
+     * 全部准备工作结束（无论成功与否）后在 EDT 上执行 action，然后关闭启动画面、打印耗时。
+     */
+    public void whenReady(Runnable action) {
+        CompletableFuture.allOf(fontFamilies, resources, recoveries, initialSlide)
+                .handle((ignored, ex) -> null)
+                .thenRunAsync(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        action.run();
+                    } finally {
+                        record("显示主窗口", start);
+                        if (splash != null) {
+                            splash.dispose();
+                            splash = null;
+                        }
+                        executor.shutdown();
+                        record("启动完成", origin);
+                        if (TRACE) {
+                            System.err.println("启动耗时（开始于  耗时  阶段  [线程]）:");
+                            synchronized (log) {
+                                log.forEach(line -> System.err.println("  " + line));
+                            }
+                        }
+                    }
+                }, SwingUtilities::invokeLater);
+    }
+
+    private <T> CompletableFuture<T> submit(String phase, Supplier<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return work.get();
+            } finally {
+                record(phase, start);
+            }
+        }, executor);
+    }
+
+    // 首次使用字体和 ImageIO 时要读取字体文件、初始化光栅化器并扫描插件，提前在后台完成
+    private static void warmUp() {
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = scratch.createGraphics();
+        for (String name : WARM_FONTS) {
+            Font font = FontCatalog.getFont(name, Font.PLAIN, 24);
+            g2d.setFont(font);
+            FontCatalog.getFontMetrics(font).stringWidth("PowerDot 幻灯片");
+            g2d.drawString("PowerDot 幻灯片", 0, 0);
+        }
+        g2d.dispose();
+        ImageIO.getReaderFormatNames();
+        ImageIO.getImageReadersByFormatName("png").hasNext();
+    }
+}
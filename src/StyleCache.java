@@ -0,0 +1,136 @@
+// 文件名： StyleCache.java
+// 功能： 共享的线型、渐变和透明度对象，绘制时复用而不是每次新建
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * BasicStroke、GradientPaint 和 AlphaComposite 都不可变，相同参数的对象可以在所有元素、所有线程间共用。
+ * 这里按参数缓存它们：元素的 draw、编辑器的选中框和放映的过渡效果都从这里取，
+ * 拖动或动画时每帧重绘不再产生这些对象。
+ * <p>
+ * 常用的整数线宽预先创建，查找不分配任何对象；其余参数第一次使用时创建。元素还会记住自己的线型，
+ * 见 ShapeElement.getBorderStroke。
+ */
+public final class StyleCache {
+    // 缓存超过该数目时清空重建，线宽、虚线和渐变颜色的组合在实际文档中很少
+    private static final int MAX_ENTRIES = 1024;
+    private static final int PRESET_WIDTHS = 32;
+    private static final BasicStroke[] SOLID = new BasicStroke[PRESET_WIDTHS + 1];
+    private static final AlphaComposite[] ALPHA = new AlphaComposite[256];
+
+    static {
+        for (int i = 0; i < SOLID.length; i++) {
+            SOLID[i] = new BasicStroke(i);
+        }
+        for (int i = 0; i < ALPHA.length; i++) {
+            ALPHA[i] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, i / 255f);
+        }
+    }
+
+    private static final Map<StrokeKey, BasicStroke> strokes = new ConcurrentHashMap<>();
+    private static final Map<GradientKey, GradientPaint> gradients = new ConcurrentHashMap<>();
+
+    private StyleCache() {
+    }
+
+    /**
+     * 与 new BasicStroke(width) 相同的实线：方头线帽、斜接。
+     */
+    public static BasicStroke solid(int width) {
+        if (width >= 0 && width <= PRESET_WIDTHS) {
+            return SOLID[width];
+        }
+        return stroke(width, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 10f, null, 0f);
+    }
+
+    /**
+     * 与同样参数的 new BasicStroke(...) 相同的线型。dash 为 null 表示实线，调用方之后修改 dash 不影响结果。
+     */
+    public static BasicStroke stroke(float width, int cap, int join, float miterLimit, float[] dash,
+            float dashPhase) {
+        StrokeKey key = new StrokeKey(width, cap, join, miterLimit, dash, dashPhase);
+        BasicStroke stroke = strokes.get(key);
+        if (stroke == null) {
+            if (strokes.size() >= MAX_ENTRIES) {
+                strokes.clear();
+            }
+            // 存入缓存的键持有 dash 的副本，调用方的数组只用于查找
+            StrokeKey owned = new StrokeKey(width, cap, join, miterLimit, dash == null ? null : dash.clone(),
+                    dashPhase);
+            stroke = new BasicStroke(width, cap, join, miterLimit, owned.dash, dashPhase);
+            BasicStroke existing = strokes.putIfAbsent(owned, stroke);
+            if (existing != null) {
+                stroke = existing;
+            }
+        }
+        return stroke;
+    }
+
+    /**
+     * 从 (0, 0) 处的 start 到 (0, height) 处的 end 的竖直渐变。
+     */
+    public static GradientPaint verticalGradient(Color start, Color end, float height) {
+        GradientKey key = new GradientKey(start.getRGB(), end.getRGB(), height);
+        GradientPaint paint = gradients.get(key);
+        if (paint == null) {
+            if (gradients.size() >= MAX_ENTRIES) {
+                gradients.clear();
+            }
+            paint = gradients.computeIfAbsent(key, k -> new GradientPaint(0, 0, start, 0, height, end));
+        }
+        return paint;
+    }
+
+    /**
+     * 不透明度为 alpha 的 SrcOver 合成，alpha 按 1/255 取整（与 8 位透明通道的精度相同）。
+     */
+    public static AlphaComposite alpha(float alpha) {
+        int index = Math.round(Math.max(0f, Math.min(1f, alpha)) * 255f);
+        return ALPHA[index];
+    }
+
+    private static final class StrokeKey {
+        final float width;
+        final int cap;
+        final int join;
+        final float miterLimit;
+        final float[] dash;
+        final float dashPhase;
+        private final int hash;
+
+        StrokeKey(float width, int cap, int join, float miterLimit, float[] dash, float dashPhase) {
+            this.width = width;
+            this.cap = cap;
+            this.join = join;
+            this.miterLimit = miterLimit;
+            this.dash = dash;
+            this.dashPhase = dashPhase;
+            int h = Float.hashCode(width);
+            h = 31 * h + cap;
+            h = 31 * h + join;
+            h = 31 * h + Float.hashCode(miterLimit);
+            h = 31 * h + Arrays.hashCode(dash);
+            this.hash = 31 * h + Float.hashCode(dashPhase);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StrokeKey k && Float.compare(width, k.width) == 0 && cap == k.cap && join == k.join
+                    && Float.compare(miterLimit, k.miterLimit) == 0 && Float.compare(dashPhase, k.dashPhase) == 0
+                    && Arrays.equals(dash, k.dash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private record GradientKey(int start, int end, float height) {
+    }
+}
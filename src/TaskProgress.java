@@ -0,0 +1,30 @@
+// 文件名： TaskProgress.java
+// 功能： 后台任务的进度报告和取消检查
+import java.io.InterruptedIOException;
+
+/**
+ * 由耗时操作在工作线程上调用：报告进度，并在可以安全中止的位置检查是否已被取消。
+ * 取消时操作抛出 InterruptedIOException，并撤销已做的部分（删除未写完的文件等）。
+ */
+public interface TaskProgress {
+    TaskProgress NONE = new TaskProgress() {
+        @Override
+        public void progress(int done, int total) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    void progress(int done, int total);
+
+    boolean isCancelled();
+
+    default void checkCancelled() throws InterruptedIOException {
+        if (isCancelled()) {
+            throw new InterruptedIOException("已取消");
+        }
+    }
+}
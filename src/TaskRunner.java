@@ -0,0 +1,274 @@
+// 文件名： TaskRunner.java
+// 功能： 在后台线程执行保存、打开、导出等耗时操作，状态栏显示进度，可取消，期间编辑器只读
+import java.awt.Cursor;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.KeyEventDispatcher;
+import java.awt.KeyboardFocusManager;
+import java.awt.Point;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+/**
+ * 主窗口的后台任务执行器。任务在 SwingWorker 线程上运行，通过 TaskProgress 报告进度和检查取消；
+ * 状态栏中的进度条显示进度，取消按钮或 Esc 取消。完成、取消和失败都以不阻塞的方式提示。
+ * <p>
+ * 任务运行期间窗口被锁定为只读：玻璃面板拦截除状态栏任务区以外的鼠标操作和键盘输入，
+ * 界面照常绘制，但不能修改文档，因此任务可以在工作线程上读取幻灯片。同一时间只运行一个任务。
+ * 所有方法只在 EDT 调用。
+ */
+public class TaskRunner {
+    private static final int MESSAGE_MILLIS = 5000;
+
+    /**
+     * 在工作线程上执行的操作。
+     */
+    public interface Task<T> {
+        T run(TaskProgress progress) throws Exception;
+    }
+
+    private final JFrame frame;
+    private final JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 5));
+    private final JLabel label = new JLabel();
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JButton cancelButton = new JButton("取消");
+    private final Timer clearMessage = new Timer(MESSAGE_MILLIS, e -> label.setText(""));
+    private final JComponent lockPane = new LockPane();
+    private final KeyEventDispatcher keyBlocker = this::blockKey;
+    private Monitor running;
+
+    public TaskRunner(JFrame frame) {
+        this.frame = frame;
+        progressBar.setStringPainted(true);
+        progressBar.setPreferredSize(new Dimension(160, 18));
+        progressBar.setVisible(false);
+        cancelButton.setVisible(false);
+        cancelButton.setFocusable(false);
+        cancelButton.addActionListener(e -> cancel());
+        clearMessage.setRepeats(false);
+        panel.add(label);
+        panel.add(progressBar);
+        panel.add(cancelButton);
+    }
+
+    /**
+     * 放在状态栏中的任务区：进度、取消按钮和完成提示。
+     */
+    public JComponent getComponent() {
+        return panel;
+    }
+
+    public boolean isBusy() {
+        return running != null;
+    }
+
+    /**
+     * 在后台运行 task，成功后在 EDT 上以结果调用 onSuccess。失败时以不阻塞的对话框显示“title失败”。
+     * 已有任务在运行时忽略本次请求并提示。
+     */
+    public <T> void run(String title, Task<T> task, Consumer<T> onSuccess) {
+        run(title, task, onSuccess, null);
+    }
+
+    /**
+     * 同 run，失败时改为调用 onFailure（不含取消）。
+     */
+    public <T> void run(String title, Task<T> task, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        run(title, task, onSuccess, onFailure, null);
+    }
+
+    /**
+     * 同 run，任务结束后（成功、失败或取消）最后调用 onFinish，用于撤下占位内容等清理工作。
+     * 因已有任务在运行而没有执行时也会调用。
+     */
+    public <T> void run(String title, Task<T> task, Consumer<T> onSuccess, Consumer<Exception> onFailure,
+            Runnable onFinish) {
+        if (running != null) {
+            showMessage("请等待“" + running.title + "”完成");
+            if (onFinish != null) {
+                onFinish.run();
+            }
+            return;
+        }
+        Monitor monitor = new Monitor(title);
+        running = monitor;
+        lock();
+        label.setText(title + "...");
+        progressBar.setIndeterminate(true);
+        progressBar.setString("");
+        progressBar.setVisible(true);
+        cancelButton.setEnabled(true);
+        cancelButton.setVisible(true);
+        clearMessage.stop();
+
+        SwingWorker<T, int[]> worker = new SwingWorker<>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return task.run(new TaskProgress() {
+                    @Override
+                    public void progress(int done, int total) {
+                        publish(new int[] { done, total });
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return monitor.cancelled;
+                    }
+                });
+            }
+
+            @Override
+            protected void process(List<int[]> chunks) {
+                int[] last = chunks.get(chunks.size() - 1);
+                progressBar.setIndeterminate(false);
+                progressBar.setMaximum(Math.max(1, last[1]));
+                progressBar.setValue(last[0]);
+                progressBar.setString(last[0] * 100L / Math.max(1, last[1]) + "%");
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    finish();
+                } finally {
+                    if (onFinish != null) {
+                        onFinish.run();
+                    }
+                }
+            }
+
+            private void finish() {
+                running = null;
+                unlock();
+                progressBar.setVisible(false);
+                cancelButton.setVisible(false);
+                label.setText("");
+                T result;
+                try {
+                    result = get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (CancellationException ex) {
+                    showMessage(title + "已取消");
+                    return;
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof InterruptedIOException && monitor.cancelled) {
+                        showMessage(title + "已取消");
+                        return;
+                    }
+                    cause.printStackTrace();
+                    if (onFailure != null && cause instanceof Exception failure) {
+                        onFailure.accept(failure);
+                    } else {
+                        showError(title + "失败: " + cause.getMessage());
+                    }
+                    return;
+                }
+                onSuccess.accept(result);
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * 在状态栏显示提示，几秒后自动消失。
+     */
+    public void showMessage(String message) {
+        label.setText(message);
+        clearMessage.restart();
+    }
+
+    /**
+     * 以不阻塞的对话框显示错误。
+     */
+    public void showError(String message) {
+        JOptionPane pane = new JOptionPane(message, JOptionPane.ERROR_MESSAGE);
+        JDialog dialog = pane.createDialog(frame, "错误");
+        dialog.setModal(false);
+        dialog.setVisible(true);
+    }
+
+    private void cancel() {
+        if (running != null && !running.cancelled) {
+            running.cancelled = true; // 任务在下一个检查点停止并撤销已做的部分
+            cancelButton.setEnabled(false);
+            label.setText("正在取消...");
+        }
+    }
+
+    private void lock() {
+        frame.setGlassPane(lockPane);
+        lockPane.setVisible(true);
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(keyBlocker);
+    }
+
+    private void unlock() {
+        lockPane.setVisible(false);
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().removeKeyEventDispatcher(keyBlocker);
+    }
+
+    // 拦截发往主窗口的键盘输入；Esc 取消任务
+    private boolean blockKey(KeyEvent e) {
+        if (SwingUtilities.getWindowAncestor(e.getComponent()) != frame && e.getComponent() != frame) {
+            return false; // 其他窗口（例如错误提示）照常使用
+        }
+        if (e.getID() == KeyEvent.KEY_PRESSED && e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+            cancel();
+        }
+        return true;
+    }
+
+    private static final class Monitor {
+        final String title;
+        volatile boolean cancelled;
+
+        Monitor(String title) {
+            this.title = title;
+        }
+    }
+
+    /**
+     * 锁定时的玻璃面板：吞掉鼠标事件，任务区除外，使取消按钮仍可点击。
+     */
+    private final class LockPane extends JComponent {
+        private static final long serialVersionUID = 1L;
+
+        LockPane() {
+            MouseAdapter swallow = new MouseAdapter() {
+            };
+            addMouseListener(swallow);
+            addMouseMotionListener(swallow);
+            addMouseWheelListener(swallow);
+            setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        }
+
+        @Override
+        public boolean contains(int x, int y) {
+            if (panel.isShowing()) {
+                Point p = SwingUtilities.convertPoint(this, x, y, panel);
+                if (panel.contains(p)) {
+                    return false;
+                }
+            }
+            return super.contains(x, y);
+        }
+    }
+}
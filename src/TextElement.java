@@ -1,18 +1,21 @@
 
 // 文本框元素类
 import java.awt.*;
-import java.awt.image.BufferedImage;
+import java.awt.font.FontRenderContext;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.List;
-import javax.swing.JTextPane;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.StyledDocument;
 import javax.swing.text.rtf.RTFEditorKit;
 
 public class TextElement extends SlideElement {
+    private static final long serialVersionUID = -6040078104381521075L;
+
     private String text; // 字符串
     private Font font; // 字体
     private Color color; // 文字颜色
@@ -20,11 +23,23 @@ public class TextElement extends SlideElement {
     private Color borderColor = Color.BLACK;
     private int borderThickness = 0;
     private float[] borderStyle = null; 
+    private transient BasicStroke borderStroke; // 由边框线宽和样式得到，二者改变时清除
     // 以四边形编辑大小
     private int width;
     private int height;
     // 默认16号宋体
-    private static final Font DEFAULT_FONT = new Font("宋体", Font.PLAIN, 16);
+    private static final Font DEFAULT_FONT = FontCatalog.getFont("宋体", Font.PLAIN, 16);
+    // 左右各留 5 像素内边距
+    private static final int HORIZONTAL_PADDING = 10;
+    static final int TEXT_INSET_X = HORIZONTAL_PADDING / 2;
+    // 顶部内边距，避免文字紧贴边框
+    static final int TOP_PADDING = 4;
+
+    // 缓存的排版结果。编辑器与缩略图/导出的抗锯齿设置不同，各占一格，避免互相挤掉
+    private transient TextLayoutEngine.Layout layoutCache;
+    private transient TextLayoutEngine.Layout secondaryLayoutCache;
+    // 解析后的富文本及其排版，只在 RTF 源文本变化时重建
+    private transient RichTextRenderer richTextRenderer;
     
     public TextElement(String text, int x, int y, int width, int height) {
         super(x, y);
@@ -52,47 +67,32 @@ public Point getRotationCenter() {
         }
 
         if (richTextRtf != null) {
-            JTextPane pane = new JTextPane();
-            pane.setEditable(false);
-            pane.setOpaque(false);
-            StyledDocument doc = createDocumentFromRtf(richTextRtf);
-            if (doc != null) {
-                pane.setDocument(doc);
-            } else {
-                pane.setText(text);
-            }
-            pane.setFont(font);
-            pane.setForeground(color);
-            pane.setBounds(x, y, width, height);
-            pane.setSize(width, height);
-            pane.printAll(g2d);
+            getRichTextRenderer().paint(g2d, x, y, width, height, font, color);
         } else {
             g2d.setFont(font);
             // 以设定颜色绘制文字
             g2d.setColor(color);
-            FontMetrics fm = g2d.getFontMetrics(font);
+            TextLayoutEngine.Layout layout = getTextLayout(g2d.getFontRenderContext());
 
-            List<String> lines = wrapText(text, fm, width - 10);
-            int lineHeight = fm.getHeight();
+            List<String> lines = layout.getLines();
+            int lineHeight = layout.getLineHeight();
 
-            // 顶部内边距，避免文字紧贴边框
-            int topPadding = 4;
-            int startY = y + topPadding + fm.getAscent();
+            int topPadding = TOP_PADDING;
+            int startY = y + topPadding + layout.getAscent();
 
             g2d.clipRect(x, y + topPadding, width, height - topPadding);
 
             for (int i = 0; i < lines.size(); i++) {
-                g2d.drawString(lines.get(i), x + 5, startY + i * lineHeight);
+                int baseline = startY + i * lineHeight;
+                if (baseline - layout.getAscent() > y + height) {
+                    break; // 其余行都在文本框之外，已被裁掉
+                }
+                g2d.drawString(lines.get(i), x + TEXT_INSET_X, baseline);
             }
         }
         if (borderThickness > 0) {
             g2d.setClip(null); // 取消文字剪裁，避免顶边被截掉
-            if (borderStyle != null) {
-        g2d.setStroke(new BasicStroke(borderThickness, BasicStroke.CAP_BUTT,
-                BasicStroke.JOIN_MITER, 10f, borderStyle, 0f));
-    } else {
-        g2d.setStroke(new BasicStroke(borderThickness));
-    }
+            g2d.setStroke(getBorderStroke());
     g2d.setColor(borderColor);
     g2d.drawRect(x, y, width, height);
         }
@@ -100,33 +100,57 @@ public Point getRotationCenter() {
         g2d.dispose();
     }
 
-    private List<String> wrapText(String text, FontMetrics fm, int maxWidth) {
-        List<String> lines = new ArrayList<>();
-        String[] paragraphs = text.split("\n", -1);
+    /**
+     * 获取当前文字的排版结果，编辑器和各绘制路径共用。
+     * 结果按文字、字体、行宽和测量上下文缓存，setText/setFont/setBounds 时失效。
+     */
+    public TextLayoutEngine.Layout getTextLayout(FontRenderContext frc) {
+        FontRenderContext key = TextLayoutEngine.measuringContext(frc);
+        int maxWidth = width - HORIZONTAL_PADDING;
+        TextLayoutEngine.Layout layout = layoutCache;
+        if (layout != null && layout.matches(text, font, maxWidth, key)) {
+            return layout;
+        }
+        TextLayoutEngine.Layout secondary = secondaryLayoutCache;
+        if (secondary != null && secondary.matches(text, font, maxWidth, key)) {
+            secondaryLayoutCache = layout;
+            layoutCache = secondary;
+            return secondary;
+        }
+        layout = TextLayoutEngine.layout(text, font, maxWidth, key);
+        secondaryLayoutCache = layoutCache;
+        layoutCache = layout;
+        return layout;
+    }
 
-        for (String paragraph : paragraphs) {
-            if (paragraph.isEmpty()) {
-                lines.add("");
-                continue;
-            }
+    // 边框线型：有虚线样式时平头线帽，否则与 new BasicStroke(borderThickness) 相同
+    private BasicStroke getBorderStroke() {
+        BasicStroke stroke = borderStroke;
+        if (stroke == null) {
+            stroke = borderStyle != null
+                    ? StyleCache.stroke(borderThickness, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10f,
+                            borderStyle, 0f)
+                    : StyleCache.solid(borderThickness);
+            borderStroke = stroke;
+        }
+        return stroke;
+    }
 
-            StringBuilder currentLine = new StringBuilder();
-            for (int i = 0; i < paragraph.length(); i++) {
-                char c = paragraph.charAt(i);
-                String testLine = currentLine.toString() + c;
-                if (fm.stringWidth(testLine) > maxWidth && currentLine.length() > 0) {
-                    lines.add(currentLine.toString());
-                    currentLine = new StringBuilder();
-                    currentLine.append(c);
-                } else {
-                    currentLine.append(c);
-                }
-            }
-            if (currentLine.length() > 0) {
-                lines.add(currentLine.toString());
-            }
+    private void invalidateTextLayout() {
+        layoutCache = null;
+        secondaryLayoutCache = null;
+    }
+
+    /**
+     * 获取富文本渲染器，RTF 只在首次绘制或 setRichTextRtf 之后解析一次。
+     */
+    public RichTextRenderer getRichTextRenderer() {
+        RichTextRenderer renderer = richTextRenderer;
+        if (renderer == null && richTextRtf != null) {
+            renderer = new RichTextRenderer(richTextRtf, text);
+            richTextRenderer = renderer;
         }
-        return lines;
+        return renderer;
     }
 
     @Override
@@ -147,16 +171,22 @@ public Point getRotationCenter() {
     public void setText(String text) {
         this.text = text;
         this.richTextRtf = null;
+        this.richTextRenderer = null;
+        invalidateTextLayout();
+        appearanceChanged();
     }
 public float[] getBorderStyle() { return borderStyle; }
-public void setBorderStyle(float[] dash) { this.borderStyle = dash; }
+public void setBorderStyle(float[] dash) { this.borderStyle = dash; borderStroke = null; appearanceChanged(); }
 
     public void setFont(Font font) {
         this.font = font;
+        invalidateTextLayout();
+        appearanceChanged();
     }
 
     public void setColor(Color color) {
         this.color = color;
+        appearanceChanged();
     }
 
     public Font getFont() {
@@ -176,7 +206,11 @@ public void setBorderStyle(float[] dash) { this.borderStyle = dash; }
     }
 
     public void setRichTextRtf(String rtf) {
+        if (rtf == null ? richTextRtf != null : !rtf.equals(richTextRtf)) {
+            this.richTextRenderer = null;
+        }
         this.richTextRtf = rtf;
+        appearanceChanged();
     }
 
     public Color getBorderColor() {
@@ -185,6 +219,7 @@ public void setBorderStyle(float[] dash) { this.borderStyle = dash; }
 
     public void setBorderColor(Color borderColor) {
         this.borderColor = borderColor;
+        appearanceChanged();
     }
 
     public int getBorderThickness() {
@@ -193,6 +228,44 @@ public void setBorderStyle(float[] dash) { this.borderStyle = dash; }
 
     public void setBorderThickness(int borderThickness) {
         this.borderThickness = Math.max(0, borderThickness);
+        borderStroke = null;
+        boundsChanged();
+    }
+
+    @Override
+    void writeData(DataOutput out, SlideFile.ImageSink images) throws IOException {
+        super.writeData(out, images);
+        SlideFile.writeString(out, text);
+        SlideFile.writeFont(out, font);
+        SlideFile.writeColor(out, color);
+        SlideFile.writeString(out, richTextRtf);
+        SlideFile.writeColor(out, borderColor);
+        out.writeInt(borderThickness);
+        SlideFile.writeDash(out, borderStyle);
+        out.writeInt(width);
+        out.writeInt(height);
+    }
+
+    @Override
+    void readData(DataInput in, SlideFile.ImageSource images) throws IOException {
+        super.readData(in, images);
+        text = SlideFile.readString(in);
+        font = SlideFile.readFont(in);
+        color = SlideFile.readColor(in);
+        richTextRtf = SlideFile.readString(in);
+        borderColor = SlideFile.readColor(in);
+        borderThickness = in.readInt();
+        borderStyle = SlideFile.readDash(in);
+        borderStroke = null;
+        width = in.readInt();
+        height = in.readInt();
+        invalidateTextLayout();
+        richTextRenderer = null;
+    }
+
+    @Override
+    protected int getStrokeOutset() {
+        return borderThickness;
     }
 
     @Override
@@ -201,16 +274,17 @@ public void setBorderStyle(float[] dash) { this.borderStyle = dash; }
         this.y = bounds.y;
         this.width = bounds.width;
         this.height = bounds.height;
+        invalidateTextLayout();
+        boundsChanged();
     }
 
     public void setFontSize(int size) {
-        this.font = this.font.deriveFont((float) size);
+        this.font = FontCatalog.derive(this.font, this.font.getStyle(), size);
+        invalidateTextLayout();
         // Adjust height to fit the new font size
-        BufferedImage tempImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = tempImage.createGraphics();
-        FontMetrics fm = g2d.getFontMetrics(this.font);
+        FontMetrics fm = FontCatalog.getFontMetrics(this.font);
         this.height = fm.getHeight() + 4;
-        g2d.dispose();
+        boundsChanged();
     }
 
     private StyledDocument createDocumentFromRtf(String rtf) {
@@ -0,0 +1,141 @@
+// 文件名： TextLayoutEngine.java
+// 功能： 文本框的自动换行排版，编辑器与各绘制路径共用同一份结果
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按字符换行的排版引擎：某个字符放不下时另起一行（兼容中文，不依赖空格断词）。
+ * 每段文字只生成一次 GlyphVector，用累计的字形位置判断行宽，整体为 O(n)。
+ * 排版在去掉变换的测量上下文中进行，因此编辑器、缩略图、放映和导出得到相同的换行结果。
+ */
+public final class TextLayoutEngine {
+    private TextLayoutEngine() {
+    }
+
+    /**
+     * 排版结果：行列表与行高、基线偏移。不可变，可在线程间共享。
+     */
+    public static final class Layout {
+        private final String text;
+        private final Font font;
+        private final int maxWidth;
+        private final FontRenderContext frc;
+        private final List<String> lines;
+        private final int lineHeight;
+        private final int ascent;
+
+        private Layout(String text, Font font, int maxWidth, FontRenderContext frc, List<String> lines,
+                int lineHeight, int ascent) {
+            this.text = text;
+            this.font = font;
+            this.maxWidth = maxWidth;
+            this.frc = frc;
+            this.lines = Collections.unmodifiableList(lines);
+            this.lineHeight = lineHeight;
+            this.ascent = ascent;
+        }
+
+        public List<String> getLines() {
+            return lines;
+        }
+
+        public int getLineHeight() {
+            return lineHeight;
+        }
+
+        public int getAscent() {
+            return ascent;
+        }
+
+        // 判断缓存的结果是否仍对应这些输入；frc 需先经过 measuringContext 归一化
+        public boolean matches(String text, Font font, int maxWidth, FontRenderContext frc) {
+            return this.maxWidth == maxWidth && this.font.equals(font) && this.frc.equals(frc)
+                    && (this.text == text || this.text.equals(text));
+        }
+    }
+
+    /**
+     * 去掉绘制目标的缩放/旋转，只保留抗锯齿与小数度量设置，作为缓存键和测量上下文。
+     */
+    public static FontRenderContext measuringContext(FontRenderContext target) {
+        if (target == null) {
+            return FontCatalog.MEASURING_CONTEXT;
+        }
+        if (target.isTransformed()) {
+            return new FontRenderContext(null, target.getAntiAliasingHint(), target.getFractionalMetricsHint());
+        }
+        return target;
+    }
+
+    /**
+     * 对文字排版。maxWidth 为可用行宽，frc 应为 measuringContext 的返回值。
+     */
+    public static Layout layout(String text, Font font, int maxWidth, FontRenderContext frc) {
+        List<String> lines = new ArrayList<>();
+        for (String paragraph : text.split("\n", -1)) {
+            if (paragraph.isEmpty()) {
+                lines.add("");
+                continue;
+            }
+            wrapParagraph(paragraph, font, maxWidth, frc, lines);
+        }
+
+        // 与 FontMetrics.getAscent()/getHeight() 相同的取整方式
+        LineMetrics lm = FontCatalog.getLineMetrics(font, frc);
+        int ascent = (int) (0.95f + lm.getAscent());
+        int lineHeight = ascent + (int) (0.95f + lm.getDescent() + lm.getLeading());
+        return new Layout(text, font, maxWidth, frc, lines, lineHeight, ascent);
+    }
+
+    private static void wrapParagraph(String paragraph, Font font, int maxWidth, FontRenderContext frc,
+            List<String> lines) {
+        int length = paragraph.length();
+        float[] advanceEnds = cumulativeAdvances(paragraph, font, frc);
+
+        int lineStart = 0;
+        float lineStartX = 0f;
+        int i = 0;
+        while (i < length) {
+            int next = i + Character.charCount(paragraph.codePointAt(i));
+            // 加上当前字符后超宽，且当前行非空，则在该字符前换行
+            if (advanceEnds[next - 1] - lineStartX > maxWidth && i > lineStart) {
+                lines.add(paragraph.substring(lineStart, i));
+                lineStart = i;
+                lineStartX = advanceEnds[i - 1];
+            }
+            i = next;
+        }
+        lines.add(paragraph.substring(lineStart));
+    }
+
+    // advanceEnds[k] 为前 k+1 个字符的累计宽度（代理对的高位字符与低位字符取相同值）
+    private static float[] cumulativeAdvances(String paragraph, Font font, FontRenderContext frc) {
+        int length = paragraph.length();
+        float[] advanceEnds = new float[length];
+        GlyphVector gv = font.createGlyphVector(frc, paragraph);
+        if (gv.getNumGlyphs() == length) {
+            float[] positions = gv.getGlyphPositions(0, length + 1, null);
+            for (int k = 0; k < length; k++) {
+                advanceEnds[k] = positions[(k + 1) * 2];
+            }
+            return advanceEnds;
+        }
+        // 含代理对等字形与字符不一一对应的情况：逐个码点测量，仍为线性
+        float x = 0f;
+        int i = 0;
+        while (i < length) {
+            int next = i + Character.charCount(paragraph.codePointAt(i));
+            x += (float) font.getStringBounds(paragraph, i, next, frc).getWidth();
+            for (int k = i; k < next; k++) {
+                advanceEnds[k] = x;
+            }
+            i = next;
+        }
+        return advanceEnds;
+    }
+}
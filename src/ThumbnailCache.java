@@ -0,0 +1,180 @@
+// 文件名： ThumbnailCache.java
+// 功能： 页面缩略图缓存，过期的缩略图在后台线程重新渲染
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+/**
+ * 按页面对象和页面修改版本缓存缩略图。
+ * 过期或缺失的缩略图交给有界线程池重新渲染，渲染完成前继续返回上一张图；
+ * 缓存总字节数超过预算时按最近最少使用淘汰。除渲染本身外，所有方法只在 EDT 上调用。
+ */
+public class ThumbnailCache {
+    private static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+    private static final int MAX_QUEUED_TASKS = 32;
+
+    private final Map<SlidePage, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // 按访问顺序
+    private final Set<SlidePage> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ThreadPoolExecutor executor;
+    private final Runnable onThumbnailReady;
+    private final long budgetBytes;
+    private long usedBytes;
+
+    public ThumbnailCache(Runnable onThumbnailReady) {
+        this(onThumbnailReady, DEFAULT_BUDGET_BYTES);
+    }
+
+    public ThumbnailCache(Runnable onThumbnailReady, long budgetBytes) {
+        this.onThumbnailReady = onThumbnailReady;
+        this.budgetBytes = budgetBytes;
+        int threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(MAX_QUEUED_TASKS), r -> {
+                    Thread t = new Thread(r, "thumbnail-renderer");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                }, (r, pool) -> {
+                    // 队列已满：丢弃最早排队的任务（多半已滚出可见区域），之后再次可见时会重新提交
+                    Runnable oldest = pool.getQueue().poll();
+                    if (oldest instanceof RenderTask task) {
+                        SwingUtilities.invokeLater(() -> pending.remove(task.page));
+                    }
+                    pool.execute(r);
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 返回页面的缩略图。缓存过期时安排后台重绘，并先返回旧图；从未渲染过时返回 null。
+     */
+    public BufferedImage get(SlidePage page, int width, int height, int slideWidth, int slideHeight) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        Entry entry = entries.get(page);
+        long version = page.getVersion();
+        boolean fresh = entry != null && entry.version == version && entry.matches(width, height, slideWidth,
+                slideHeight);
+        if (!fresh && pending.add(page)) {
+            List<SlideElement> snapshot = new ArrayList<>(page.getElements());
+            executor.execute(new RenderTask(page, snapshot, version, width, height, slideWidth, slideHeight));
+        }
+        return entry == null ? null : entry.image;
+    }
+
+    /**
+     * 只保留仍在幻灯片中的页面，其余缓存立即释放。
+     * 逐个检查已缓存的页面，而不是遍历 pages，延迟加载的页面列表不会因此被全部读取。
+     */
+    public void retainAll(List<SlidePage> pages) {
+        Iterator<Map.Entry<SlidePage, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<SlidePage, Entry> e = it.next();
+            if (pages.indexOf(e.getKey()) < 0) {
+                usedBytes -= e.getValue().bytes();
+                it.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    private void store(SlidePage page, Entry entry) {
+        pending.remove(page);
+        Entry old = entries.put(page, entry);
+        if (old != null) {
+            usedBytes -= old.bytes();
+        }
+        usedBytes += entry.bytes();
+        Iterator<Map.Entry<SlidePage, Entry>> it = entries.entrySet().iterator();
+        while (usedBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<SlidePage, Entry> eldest = it.next();
+            if (eldest.getKey() == page) {
+                continue; // 刚放入的一张总是保留
+            }
+            usedBytes -= eldest.getValue().bytes();
+            it.remove();
+        }
+        onThumbnailReady.run();
+    }
+
+    /**
+     * 把页面按比例绘制到指定大小的图像中。elements 为调用方在 EDT 上取得的快照。
+     */
+    public static BufferedImage renderThumbnail(SlidePage page, List<SlideElement> elements, int width,
+            int height, int slideWidth, int slideHeight) {
+        return PageRenderer.render(page, elements, slideWidth, slideHeight, width, height,
+                BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private final class RenderTask implements Runnable {
+        final SlidePage page;
+        final List<SlideElement> elements;
+        final long version;
+        final int width;
+        final int height;
+        final int slideWidth;
+        final int slideHeight;
+
+        RenderTask(SlidePage page, List<SlideElement> elements, long version, int width, int height,
+                int slideWidth, int slideHeight) {
+            this.page = page;
+            this.elements = elements;
+            this.version = version;
+            this.width = width;
+            this.height = height;
+            this.slideWidth = slideWidth;
+            this.slideHeight = slideHeight;
+        }
+
+        @Override
+        public void run() {
+            try {
+                BufferedImage image = renderThumbnail(page, elements, width, height, slideWidth, slideHeight);
+                Entry entry = new Entry(image, version, slideWidth, slideHeight);
+                SwingUtilities.invokeLater(() -> store(page, entry));
+            } catch (RuntimeException ex) {
+                // 渲染期间页面被并发修改等情况：放弃这一次，下次绘制时会重新提交
+                ex.printStackTrace();
+                SwingUtilities.invokeLater(() -> pending.remove(page));
+            }
+        }
+    }
+
+    private static final class Entry {
+        final BufferedImage image;
+        final long version;
+        final int slideWidth;
+        final int slideHeight;
+
+        Entry(BufferedImage image, long version, int slideWidth, int slideHeight) {
+            this.image = image;
+            this.version = version;
+            this.slideWidth = slideWidth;
+            this.slideHeight = slideHeight;
+        }
+
+        boolean matches(int width, int height, int slideWidth, int slideHeight) {
+            return image.getWidth() == width && image.getHeight() == height && this.slideWidth == slideWidth
+                    && this.slideHeight == slideHeight;
+        }
+
+        long bytes() {
+            return 4L * image.getWidth() * image.getHeight();
+        }
+    }
+}
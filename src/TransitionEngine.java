@@ -0,0 +1,227 @@
+// 文件名: TransitionEngine.java
+// 功能: 放映翻页动画的主动渲染引擎，在独立线程上按显示器刷新率逐帧绘制
+import java.awt.Component;
+import java.awt.DisplayMode;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.SwingUtilities;
+
+/**
+ * 翻页动画引擎。进度按 System.nanoTime 计算，每帧通过窗口的 BufferStrategy 直接绘制并翻转，
+ * 不经过 Swing 的重绘队列；无法创建 BufferStrategy 时退回为按帧请求 Swing 重绘。
+ * 每次动画结束后记录帧数、丢帧数和最长帧间隔，由 getLastStats 读取。
+ */
+public class TransitionEngine {
+    /**
+     * 绘制一帧，progress 取值 0~1。在引擎线程上调用。
+     */
+    public interface FrameRenderer {
+        void renderFrame(Graphics2D g, float progress);
+    }
+
+    /**
+     * 一次动画的帧统计。
+     */
+    public static final class Stats {
+        private final int frames;
+        private final int droppedFrames;
+        private final long worstFrameNanos;
+        private final long frameIntervalNanos;
+
+        Stats(int frames, int droppedFrames, long worstFrameNanos, long frameIntervalNanos) {
+            this.frames = frames;
+            this.droppedFrames = droppedFrames;
+            this.worstFrameNanos = worstFrameNanos;
+            this.frameIntervalNanos = frameIntervalNanos;
+        }
+
+        public int getFrames() {
+            return frames;
+        }
+
+        public int getDroppedFrames() {
+            return droppedFrames;
+        }
+
+        public long getWorstFrameNanos() {
+            return worstFrameNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d 帧，丢帧 %d，最长帧间隔 %.1f ms（目标 %.1f ms）", frames, droppedFrames,
+                    worstFrameNanos / 1e6, frameIntervalNanos / 1e6);
+        }
+    }
+
+    private static final int DEFAULT_REFRESH_RATE = 60;
+
+    private final Window window;
+    private final Component fallbackTarget;
+    private final long frameIntervalNanos;
+    private BufferStrategy strategy;
+    private volatile Thread thread;
+    private volatile boolean cancelled;
+    private volatile float progress;
+    private volatile Stats lastStats;
+
+    /**
+     * @param window         主动渲染的全屏窗口
+     * @param fallbackTarget 无法主动渲染时每帧请求重绘的组件，其绘制代码应读取 getProgress()
+     */
+    public TransitionEngine(Window window, Component fallbackTarget) {
+        this.window = window;
+        this.fallbackTarget = fallbackTarget;
+        this.frameIntervalNanos = 1_000_000_000L / detectRefreshRate(window.getGraphicsConfiguration());
+    }
+
+    private static int detectRefreshRate(GraphicsConfiguration gc) {
+        if (gc != null) {
+            DisplayMode mode = gc.getDevice().getDisplayMode();
+            if (mode != null && mode.getRefreshRate() != DisplayMode.REFRESH_RATE_UNKNOWN
+                    && mode.getRefreshRate() > 0) {
+                return mode.getRefreshRate();
+            }
+        }
+        return DEFAULT_REFRESH_RATE;
+    }
+
+    public float getProgress() {
+        return progress;
+    }
+
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * 最近一次结束的动画的帧统计，尚未播放过动画时为 null。onFinished 执行时已经更新。
+     */
+    public Stats getLastStats() {
+        return lastStats;
+    }
+
+    /**
+     * 启动动画（在 EDT 上调用）。结束或被取消后在 EDT 上执行 onFinished。
+     */
+    public void start(long durationNanos, FrameRenderer renderer, Runnable onFinished) {
+        cancel();
+        BufferStrategy activeStrategy = ensureBufferStrategy();
+        cancelled = false;
+        progress = 0f;
+        if (activeStrategy != null) {
+            window.setIgnoreRepaint(true); // 动画期间不让系统重绘事件覆盖主动渲染的画面
+        }
+        Thread t = new Thread(() -> {
+            try {
+                runLoop(durationNanos, renderer, activeStrategy);
+            } finally {
+                SwingUtilities.invokeLater(() -> {
+                    window.setIgnoreRepaint(false);
+                    onFinished.run();
+                });
+            }
+        }, "slideshow-transition");
+        t.setDaemon(true);
+        t.setPriority(Thread.MAX_PRIORITY);
+        thread = t;
+        t.start();
+    }
+
+    /**
+     * 取消正在进行的动画并等待引擎线程结束，之后可以安全地销毁窗口。
+     */
+    public void cancel() {
+        Thread t = thread;
+        if (t == null) {
+            return;
+        }
+        cancelled = true;
+        LockSupport.unpark(t);
+        try {
+            t.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private BufferStrategy ensureBufferStrategy() {
+        if (strategy == null && window.isDisplayable()) {
+            try {
+                window.createBufferStrategy(2);
+                strategy = window.getBufferStrategy();
+            } catch (RuntimeException ex) {
+                strategy = null; // 不支持时退回 Swing 重绘
+            }
+        }
+        return strategy;
+    }
+
+    private void runLoop(long durationNanos, FrameRenderer renderer, BufferStrategy activeStrategy) {
+        long start = System.nanoTime();
+        long nextDeadline = start;
+        long lastFrame = start;
+        int frames = 0;
+        int dropped = 0;
+        long worst = 0;
+        try {
+            while (!cancelled) {
+                long now = System.nanoTime();
+                float p = Math.min(1f, (float) (now - start) / durationNanos);
+                progress = p;
+                if (activeStrategy != null) {
+                    presentFrame(activeStrategy, renderer, p);
+                } else {
+                    fallbackTarget.repaint();
+                }
+
+                long presented = System.nanoTime();
+                if (frames > 0) {
+                    long delta = presented - lastFrame;
+                    worst = Math.max(worst, delta);
+                    // 超过 1.5 个刷新周期视为丢帧，按错过的周期数计
+                    if (delta > frameIntervalNanos * 3 / 2) {
+                        dropped += (int) ((delta + frameIntervalNanos / 2) / frameIntervalNanos) - 1;
+                    }
+                }
+                lastFrame = presented;
+                frames++;
+                if (p >= 1f) {
+                    break;
+                }
+
+                // 按绝对时间排下一帧，落后时直接跳到下一个周期，避免误差累积
+                nextDeadline += frameIntervalNanos;
+                if (nextDeadline < presented) {
+                    nextDeadline = presented + frameIntervalNanos - (presented - start) % frameIntervalNanos;
+                }
+                long wait;
+                while (!cancelled && (wait = nextDeadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+        } finally {
+            lastStats = new Stats(frames, dropped, worst, frameIntervalNanos);
+            thread = null;
+        }
+    }
+
+    private void presentFrame(BufferStrategy activeStrategy, FrameRenderer renderer, float p) {
+        do {
+            do {
+                Graphics2D g = (Graphics2D) activeStrategy.getDrawGraphics();
+                try {
+                    renderer.renderFrame(g, p);
+                } finally {
+                    g.dispose();
+                }
+            } while (activeStrategy.contentsRestored());
+            activeStrategy.show();
+        } while (activeStrategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+}